@@ -17,4 +17,7 @@ public @interface VaneModule {
 	long lang_version();
 
 	long storage_version();
+
+	// Default of the module's binary_storage config option
+	boolean binary_storage() default false;
 }
@@ -1,4 +1,6 @@
 import java.io.ByteArrayOutputStream
+import java.util.Properties
+import java.util.zip.ZipFile
 
 plugins {
 	id("com.github.johnrengelman.shadow") version "7.1.0"
@@ -11,7 +13,27 @@ dependencies {
 	implementation(project(":vane-annotations"))
 }
 
-val resource_pack_sha1: String = ByteArrayOutputStream().use { outputStream ->
+// The sidecar written with the pack records its sha1 and content hash. It is only
+// trusted if that content hash matches the comment of the published archive, as
+// archives with the same content are byte-identical. Otherwise the archive is hashed.
+val resource_pack_file = file("../docs/resourcepacks/v" + project.version + ".zip")
+val resource_pack_sidecar = file("../docs/resourcepacks/v" + project.version + ".zip.sha1")
+
+fun verified_sidecar_sha1(): String? {
+	if (!resource_pack_file.exists() || !resource_pack_sidecar.exists()) {
+		return null
+	}
+
+	val properties = Properties()
+	resource_pack_sidecar.inputStream().use { properties.load(it) }
+	val comment = ZipFile(resource_pack_file).use { it.comment }
+	if (comment == null || comment != properties.getProperty("content_hash")) {
+		return null
+	}
+	return properties.getProperty("sha1")
+}
+
+val resource_pack_sha1: String = verified_sidecar_sha1() ?: ByteArrayOutputStream().use { outputStream ->
 	project.exec {
 		commandLine("sha1sum", "../docs/resourcepacks/v" + project.version + ".zip")
 		standardOutput = outputStream
@@ -15,13 +15,16 @@ import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.event.ClickEvent;
@@ -31,7 +34,6 @@ import org.apache.commons.io.IOUtils;
 import org.bukkit.Keyed;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
-import org.bukkit.block.Block;
 import org.bukkit.block.Skull;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Item;
@@ -51,8 +53,10 @@ import org.bukkit.permissions.Permission;
 import org.bukkit.permissions.PermissionDefault;
 import org.bukkit.plugin.messaging.PluginMessageListener;
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.oddlama.vane.annotation.VaneModule;
 import org.oddlama.vane.annotation.config.ConfigBoolean;
+import org.oddlama.vane.annotation.config.ConfigLong;
 import org.oddlama.vane.annotation.lang.LangMessage;
 import org.oddlama.vane.annotation.persistent.Persistent;
 import org.oddlama.vane.core.functional.Consumer1;
@@ -60,10 +64,12 @@ import org.oddlama.vane.core.item.CustomItem;
 import org.oddlama.vane.core.lang.TranslatedMessage;
 import org.oddlama.vane.core.material.HeadMaterialLibrary;
 import org.oddlama.vane.core.menu.MenuManager;
+import org.oddlama.vane.core.metrics.MetricsRegistry;
 import org.oddlama.vane.core.module.Module;
 import org.oddlama.vane.core.module.ModuleComponent;
+import org.oddlama.vane.core.scheduler.TickScheduler;
 
-@VaneModule(name = "core", bstats = 8637, config_version = 6, lang_version = 2, storage_version = 1)
+@VaneModule(name = "core", bstats = 8637, config_version = 8, lang_version = 4, storage_version = 1)
 public class Core extends Module<Core> implements PluginMessageListener {
 
 	/** The base offset for any model data used by vane plugins. */
@@ -120,6 +126,12 @@ public class Core extends Module<Core> implements PluginMessageListener {
 	);
 
 	public MenuManager menu_manager;
+	public PlayerMovementDispatcher movement_dispatcher;
+	// Timings of event handlers and tasks of all modules
+	public MetricsRegistry metrics_registry = new MetricsRegistry();
+	// Shared scheduler for budgeted jobs and spread timers. Jobs use at most 10ms per tick.
+	public TickScheduler scheduler = new TickScheduler(this, 10.0);
+	public ResourcePackWriter resource_pack_writer = new ResourcePackWriter(this);
 
 	// Persistent storage
 	@Persistent
@@ -140,6 +152,7 @@ public class Core extends Module<Core> implements PluginMessageListener {
 
 	public String current_version = null;
 	public String latest_version = null;
+	private TickScheduler.Task update_check_task = null;
 
 	@ConfigBoolean(
 		def = true,
@@ -147,6 +160,21 @@ public class Core extends Module<Core> implements PluginMessageListener {
 	)
 	public boolean config_warn_breaking_loot_blocks;
 
+	@ConfigBoolean(
+		def = true,
+		desc = "Record the execution time of all event handlers and tasks of vane modules. Use /vane metrics to view the slowest ones. Changes only apply to modules enabled after the change, so restart the server after changing this."
+	)
+	public boolean config_timings;
+
+	@ConfigLong(
+		def = 300,
+		min = 0,
+		desc = "Interval in seconds in which all recorded metrics are written to metrics.json in the vane-core plugin folder. Set to 0 to disable."
+	)
+	public long config_metrics_dump_interval;
+
+	private TickScheduler.Task metrics_dump_task = null;
+
 	public Core() {
 		// Create global command catch-all permission
 		register_permission(permission_command_catchall);
@@ -164,6 +192,7 @@ public class Core extends Module<Core> implements PluginMessageListener {
 		new org.oddlama.vane.core.commands.Vane(this);
 		new org.oddlama.vane.core.commands.CustomItem(this);
 		menu_manager = new MenuManager(this);
+		movement_dispatcher = new PlayerMovementDispatcher(this);
 		new ResourcePackDistributor(this);
 		new CommandHider(this);
 	}
@@ -207,32 +236,88 @@ public class Core extends Module<Core> implements PluginMessageListener {
 		if (config_update_notices) {
 			// Now, and every hour after that check if a new version is available.
 			// OPs will get a message about this when they join.
-			schedule_task_timer(this::check_for_update, 1l, ms_to_ticks(2 * 60l * 60l * 1000l));
+			update_check_task =
+				schedule_spread_timer("update_check", this::check_for_update, 1l, ms_to_ticks(2 * 60l * 60l * 1000l));
+		}
+
+		if (config_metrics_dump_interval > 0) {
+			final var interval = ms_to_ticks(config_metrics_dump_interval * 1000l);
+			metrics_dump_task = schedule_spread_timer("metrics_dump", this::dump_metrics, interval, interval);
 		}
 	}
 
+	@Override
+	public void on_config_change() {
+		metrics_registry.timings_enabled(config_timings);
+	}
+
+	public void dump_metrics() {
+		final var snapshot = metrics_registry.to_json();
+		final var file = new File(getDataFolder(), "metrics.json");
+		getServer()
+			.getScheduler()
+			.runTaskAsynchronously(
+				this,
+				() -> {
+					try {
+						MetricsRegistry.dump(snapshot, file);
+					} catch (IOException e) {
+						log.log(Level.WARNING, "Could not write metrics to '" + file + "'", e);
+					}
+				}
+			);
+	}
+
+	@Override
+	public void onDisable() {
+		super.onDisable();
+		// Core is disabled last, so all other modules have already cancelled their tasks
+		scheduler.shutdown();
+		resource_pack_writer.shutdown();
+	}
+
 	@Override
 	public void on_disable() {
 		super.on_disable();
 		getServer().getMessenger().unregisterIncomingPluginChannel(this, CHANNEL_AUTH_MULTIPLEX, this);
+		loot_break_attempts.clear();
+		if (update_check_task != null) {
+			update_check_task.cancel();
+			update_check_task = null;
+		}
+		if (metrics_dump_task != null) {
+			metrics_dump_task.cancel();
+			metrics_dump_task = null;
+		}
 	}
 
-	public boolean generate_resource_pack() {
+	/**
+	 * Generates the resource pack. All modules generate their parts on the calling thread,
+	 * while compressing and writing the archive happens on the resource pack writer's thread,
+	 * which reuses the compressed files of modules whose part didn't change. The returned
+	 * future completes with true if the pack was generated successfully.
+	 */
+	public CompletableFuture<Boolean> generate_resource_pack() {
+		final var snapshot = new ResourcePackWriter.Snapshot();
 		try {
-			var pack = new ResourcePackGenerator();
-			pack.set_description("Vane plugin resource pack");
-			pack.set_icon_png(getResource("pack.png"));
-
+			final var all_overrides = new ArrayList<Map<NamespacedKey, List<JSONObject>>>();
 			for (var m : vane_modules) {
-				m.generate_resource_pack(pack);
+				final var part = new ResourcePackGenerator();
+				m.generate_resource_pack(part);
+				snapshot.add_module(m.get_name(), part.own_entries());
+				all_overrides.add(part.item_overrides());
 			}
 
-			pack.write(new File("vane-resource-pack.zip"));
+			var pack = new ResourcePackGenerator();
+			pack.set_description("Vane plugin resource pack");
+			pack.set_icon_png(getResource("pack.png"));
+			snapshot.set_shared(pack.shared_entries(all_overrides));
 		} catch (Exception e) {
 			log.log(Level.SEVERE, "Error while generating resourcepack", e);
-			return false;
+			return CompletableFuture.completedFuture(false);
 		}
-		return true;
+
+		return resource_pack_writer.write_async(snapshot, new File("vane-resource-pack.zip"));
 	}
 
 	public void for_all_module_components(final Consumer1<ModuleComponent<?>> f) {
@@ -279,7 +364,7 @@ public class Core extends Module<Core> implements PluginMessageListener {
 		// Only when using a custom item that is a hoe
 		final var player = event.getPlayer();
 		final var item = player.getEquipment().getItem(event.getHand());
-		if (is_custom_item(item) && MaterialTags.HOES.isTagged(item)) {
+		if (MaterialTags.HOES.isTagged(item) && is_custom_item(item)) {
 			event.setCancelled(true);
 		}
 	}
@@ -529,8 +614,8 @@ public class Core extends Module<Core> implements PluginMessageListener {
 		}
 	}
 
-	// Prevent loot chest destruction
-	private final Map<Block, Map<UUID, Long>> loot_break_attempts = new HashMap<>();
+	// Prevent loot chest destruction. Attempts are forgotten after 30 seconds.
+	private final LootBreakAttempts loot_break_attempts = new LootBreakAttempts(30000, 4096);
 
 	@EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
 	public void on_break_loot_chest(final BlockBreakEvent event) {
@@ -550,23 +635,11 @@ public class Core extends Module<Core> implements PluginMessageListener {
 
 		final var block = event.getBlock();
 		final var player = event.getPlayer();
-		var block_attempts = loot_break_attempts.get(block);
 		final var now = System.currentTimeMillis();
-		if (block_attempts != null) {
-			final var player_attempt_time = block_attempts.get(player.getUniqueId());
-			if (player_attempt_time != null) {
-				final var elapsed = now - player_attempt_time;
-				if (elapsed > 5000 && elapsed < 30000) {
-					// Allow
-					return;
-				}
-			} else {
-				block_attempts.put(player.getUniqueId(), now);
-			}
-		} else {
-			block_attempts = new HashMap<UUID, Long>();
-			block_attempts.put(player.getUniqueId(), now);
-			loot_break_attempts.put(block, block_attempts);
+		final var player_attempt_time = loot_break_attempts.attempt(block, player.getUniqueId(), now);
+		if (player_attempt_time != -1 && now - player_attempt_time > 5000) {
+			// Allow
+			return;
 		}
 
 		lang_break_loot_block_prevented.send(player);
@@ -0,0 +1,91 @@
+package org.oddlama.vane.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.bukkit.block.Block;
+
+/**
+ * Remembers when players first tried to break a loot block. Blocks are identified
+ * by world id and packed coordinates, so neither blocks nor worlds are retained.
+ * Attempts expire after a fixed window and the number of tracked attempts is capped.
+ * Entries are kept in insertion order, which is also the order of their timestamps,
+ * so expiring only ever has to look at the oldest entries.
+ */
+public class LootBreakAttempts {
+
+	private static class Key {
+
+		private final UUID world_id;
+		private final long block_key;
+		private final UUID player_id;
+
+		private Key(final UUID world_id, long block_key, final UUID player_id) {
+			this.world_id = world_id;
+			this.block_key = block_key;
+			this.player_id = player_id;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			final var o = (Key) other;
+			return block_key == o.block_key && world_id.equals(o.world_id) && player_id.equals(o.player_id);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * Long.hashCode(block_key) + world_id.hashCode()) + player_id.hashCode();
+		}
+	}
+
+	private final long window_ms;
+	private final LinkedHashMap<Key, Long> attempts;
+
+	public LootBreakAttempts(long window_ms, int max_size) {
+		this.window_ms = window_ms;
+		this.attempts =
+			new LinkedHashMap<>() {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+					return size() > max_size;
+				}
+			};
+	}
+
+	private void expire(long now) {
+		final var it = attempts.values().iterator();
+		while (it.hasNext()) {
+			if (now - it.next() < window_ms) {
+				break;
+			}
+			it.remove();
+		}
+	}
+
+	/**
+	 * Returns the time of the player's previous attempt to break the given block,
+	 * if it is still within the window. Otherwise records this attempt and returns -1.
+	 */
+	public long attempt(final Block block, final UUID player_id, long now) {
+		expire(now);
+
+		final var key = new Key(block.getWorld().getUID(), block.getBlockKey(), player_id);
+		final var previous = attempts.get(key);
+		if (previous != null) {
+			return previous;
+		}
+
+		attempts.put(key, now);
+		return -1;
+	}
+
+	public void clear() {
+		attempts.clear();
+	}
+}
@@ -6,11 +6,12 @@ import com.comphenix.protocol.events.PacketAdapter;
 import com.comphenix.protocol.events.PacketContainer;
 import com.comphenix.protocol.events.PacketEvent;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -19,17 +20,108 @@ import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerKickEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerResourcePackStatusEvent;
+import org.oddlama.vane.annotation.config.ConfigBoolean;
+import org.oddlama.vane.annotation.config.ConfigInt;
 import org.oddlama.vane.core.module.Context;
 import org.oddlama.vane.packet.WrapperPlayServerChat;
 
 public class PlayerMessageDelayer extends Listener<Core> {
 
+	@ConfigInt(
+		def = 100,
+		min = 1,
+		desc = "The maximum amount of messages to delay per player. When more messages arrive, the oldest ones are dropped."
+	)
+	public int config_max_messages;
+
+	@ConfigInt(
+		def = 65536,
+		min = 1024,
+		desc = "The maximum total size of delayed messages per player in bytes. When more messages arrive, the oldest ones are dropped."
+	)
+	public int config_max_bytes;
+
+	@ConfigBoolean(
+		def = true,
+		desc = "Only delay one copy of a message that is sent repeatedly in a row, such as a spammy broadcast."
+	)
+	public boolean config_coalesce_repeated;
+
 	private Adapter adapter;
-	private final Map<UUID, List<PacketContainer>> message_queues = new HashMap<>();
-	private final Map<UUID, Long> message_queue_start_time = new HashMap<>();
+	// Written from the async pre-login thread and netty threads, drained on the main thread
+	private final Map<UUID, MessageQueue> message_queues = new ConcurrentHashMap<>();
 
 	// Force-stop delaying after 30 seconds.
 	private static final long message_delaying_timeout = 30000;
+	// Size assumed for messages whose size is unknown
+	private static final int unknown_message_size = 256;
+
+	private static class QueuedMessage {
+
+		private final PacketContainer packet;
+		private final String json;
+		private final int size;
+
+		private QueuedMessage(final PacketContainer packet, final String json, int size) {
+			this.packet = packet;
+			this.json = json;
+			this.size = size;
+		}
+	}
+
+	private class MessageQueue {
+
+		private final long start_time = System.currentTimeMillis();
+		private final ArrayDeque<QueuedMessage> messages = new ArrayDeque<>();
+		private int bytes = 0;
+		private int dropped = 0;
+		private boolean closed = false;
+
+		/**
+		 * Queues the given packet, unless the queue has already been drained.
+		 * Returns false if the packet was not queued and should be sent normally.
+		 */
+		private synchronized boolean offer(final PacketContainer packet) {
+			if (closed) {
+				return false;
+			}
+
+			final var message = new WrapperPlayServerChat(packet).getMessage();
+			final var json = message == null ? null : message.getJson();
+			if (config_coalesce_repeated && json != null) {
+				final var last = messages.peekLast();
+				if (last != null && json.equals(last.json)) {
+					// Swallow the repetition
+					return true;
+				}
+			}
+
+			final var size = json == null ? unknown_message_size : json.length();
+			messages.add(new QueuedMessage(packet.deepClone(), json, size));
+			bytes += size;
+
+			// Drop the oldest messages when the limits are exceeded
+			while (messages.size() > 1 && (messages.size() > config_max_messages || bytes > config_max_bytes)) {
+				bytes -= messages.poll().size;
+				++dropped;
+			}
+			return true;
+		}
+
+		/**
+		 * Closes the queue and returns all queued packets in order.
+		 */
+		private synchronized List<PacketContainer> drain() {
+			closed = true;
+			final var packets = new ArrayList<PacketContainer>(messages.size());
+			for (final var message : messages) {
+				packets.add(message.packet);
+			}
+			messages.clear();
+			bytes = 0;
+			return packets;
+		}
+	}
 
 	public PlayerMessageDelayer(Context<Core> context) {
 		super(
@@ -59,9 +151,9 @@ public class PlayerMessageDelayer extends Listener<Core> {
 
 	private void check_message_delay_timeout() {
 		final var now = System.currentTimeMillis();
-		for (final var uuid : new HashMap<>(message_queue_start_time).keySet()) {
-			final var start_time = message_queue_start_time.get(uuid);
-			if (now - start_time > message_delaying_timeout) {
+		for (final var entry : message_queues.entrySet()) {
+			final var uuid = entry.getKey();
+			if (now - entry.getValue().start_time > message_delaying_timeout) {
 				final var offline_player = get_module().getServer().getOfflinePlayer(uuid);
 				if (!offline_player.isOnline()) {
 					stop_queueing(uuid);
@@ -94,13 +186,16 @@ public class PlayerMessageDelayer extends Listener<Core> {
 	}
 
 	private void start_queueing(UUID uuid) {
-		message_queues.put(uuid, new ArrayList<PacketContainer>());
-		message_queue_start_time.put(uuid, System.currentTimeMillis());
+		message_queues.put(uuid, new MessageQueue());
 	}
 
-	private List<PacketContainer> stop_queueing(UUID uuid) {
-		message_queue_start_time.remove(uuid);
-		return message_queues.remove(uuid);
+	private MessageQueue stop_queueing(UUID uuid) {
+		final var queue = message_queues.remove(uuid);
+		if (queue != null) {
+			// Packets that are sent concurrently will no longer be queued
+			queue.drain();
+		}
+		return queue;
 	}
 
 	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -116,11 +211,25 @@ public class PlayerMessageDelayer extends Listener<Core> {
 	private void relay_messages_and_stop_queueing(final Player player) {
 		// Send delayed messages, which would otherwise be displayed in untranslated form
 		// as the resource pack is only now fully loaded
-		final var queue = stop_queueing(player.getUniqueId());
+		final var queue = message_queues.remove(player.getUniqueId());
 		if (queue == null) {
 			return;
 		}
-		for (final var packet : queue) {
+
+		// Drain all messages at once, so none can be appended while they are being sent
+		final var packets = queue.drain();
+		if (queue.dropped > 0) {
+			get_module()
+				.log.info(
+					"Dropped " +
+					queue.dropped +
+					" delayed messages to player '" +
+					player.getName() +
+					"', as there were too many."
+				);
+		}
+
+		for (final var packet : packets) {
 			try {
 				get_module().protocol_manager.sendServerPacket(player, packet);
 			} catch (InvocationTargetException e) {
@@ -200,13 +309,9 @@ public class PlayerMessageDelayer extends Listener<Core> {
 			}
 
 			final var queue = message_queues.get(event.getPlayer().getUniqueId());
-			if (queue == null) {
-				return;
+			if (queue != null && queue.offer(event.getPacket())) {
+				event.setCancelled(true);
 			}
-
-			final var packet = new WrapperPlayServerChat(event.getPacket());
-			queue.add(packet.getHandle().deepClone());
-			event.setCancelled(true);
 		}
 	}
 }
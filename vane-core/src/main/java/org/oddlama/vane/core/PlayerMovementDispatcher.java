@@ -0,0 +1,182 @@
+package org.oddlama.vane.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.oddlama.vane.core.module.Context;
+
+/**
+ * Listens to PlayerMoveEvent once for all vane modules. The kind of change
+ * (rotation, position, block, chunk) is classified once per event, and only
+ * subscribers interested in that kind of change are called. Most move events
+ * are pure rotations or movements within a block, so most subscribers are skipped.
+ *
+ * Subscribers are called in order of subscription at either NORMAL or MONITOR
+ * priority, and no longer after the event was cancelled.
+ */
+public class PlayerMovementDispatcher extends Listener<Core> {
+
+	// Kinds of changes, ordered by significance. Each includes all previous ones.
+	public static enum Change {
+		ROTATION,
+		POSITION,
+		BLOCK,
+		CHUNK,
+	}
+
+	public static class Subscription {
+
+		private final EventPriority priority;
+		private final Change change;
+		private final Consumer<Movement> handler;
+
+		private Subscription(final EventPriority priority, final Change change, final Consumer<Movement> handler) {
+			this.priority = priority;
+			this.change = change;
+			this.handler = handler;
+		}
+	}
+
+	public static class Movement {
+
+		private final PlayerMoveEvent event;
+		private final Change change;
+		private Block to_block = null;
+
+		private Movement(final PlayerMoveEvent event, final Change change) {
+			this.event = event;
+			this.change = change;
+		}
+
+		public PlayerMoveEvent event() {
+			return event;
+		}
+
+		public Player player() {
+			return event.getPlayer();
+		}
+
+		public Change change() {
+			return change;
+		}
+
+		public boolean position_changed() {
+			return change.compareTo(Change.POSITION) >= 0;
+		}
+
+		public boolean block_changed() {
+			return change.compareTo(Change.BLOCK) >= 0;
+		}
+
+		public boolean chunk_changed() {
+			return change == Change.CHUNK;
+		}
+
+		// The block at the target location, shared by all subscribers.
+		public Block to_block() {
+			if (to_block == null) {
+				to_block = event.getTo().getBlock();
+			}
+			return to_block;
+		}
+	}
+
+	private final List<Subscription> normal_subscriptions = new ArrayList<>();
+	private final List<Subscription> monitor_subscriptions = new ArrayList<>();
+
+	public PlayerMovementDispatcher(Context<Core> context) {
+		super(context);
+	}
+
+	private List<Subscription> subscriptions(final EventPriority priority) {
+		switch (priority) {
+			case NORMAL:
+				return normal_subscriptions;
+			case MONITOR:
+				return monitor_subscriptions;
+			default:
+				throw new IllegalArgumentException("Movement subscriptions only support NORMAL and MONITOR priority");
+		}
+	}
+
+	/**
+	 * Calls the handler for every uncancelled move event that changes at least the given kind.
+	 * Subscribe in on_enable and unsubscribe the returned subscription in on_disable.
+	 */
+	public Subscription subscribe(final EventPriority priority, final Change change, final Consumer<Movement> handler) {
+		final var subscription = new Subscription(priority, change, handler);
+		subscriptions(priority).add(subscription);
+		return subscription;
+	}
+
+	public void unsubscribe(final Subscription subscription) {
+		if (subscription != null) {
+			subscriptions(subscription.priority).remove(subscription);
+		}
+	}
+
+	private static Change classify(final Location from, final Location to) {
+		if (from.getWorld() != to.getWorld()) {
+			return Change.CHUNK;
+		}
+
+		if (from.getX() == to.getX() && from.getY() == to.getY() && from.getZ() == to.getZ()) {
+			return Change.ROTATION;
+		}
+
+		final var from_x = from.getBlockX();
+		final var from_z = from.getBlockZ();
+		final var to_x = to.getBlockX();
+		final var to_z = to.getBlockZ();
+		if ((from_x >> 4) != (to_x >> 4) || (from_z >> 4) != (to_z >> 4)) {
+			return Change.CHUNK;
+		}
+
+		if (from_x != to_x || from.getBlockY() != to.getBlockY() || from_z != to_z) {
+			return Change.BLOCK;
+		}
+
+		return Change.POSITION;
+	}
+
+	private void dispatch(final PlayerMoveEvent event, final List<Subscription> subscriptions) {
+		if (subscriptions.isEmpty()) {
+			return;
+		}
+
+		// Classified per priority, as earlier subscribers may have changed the target location.
+		final var change = classify(event.getFrom(), event.getTo());
+		Movement movement = null;
+		for (int i = 0; i < subscriptions.size(); ++i) {
+			final var subscription = subscriptions.get(i);
+			if (change.compareTo(subscription.change) < 0) {
+				continue;
+			}
+
+			if (movement == null) {
+				movement = new Movement(event, change);
+			}
+
+			subscription.handler.accept(movement);
+			if (event.isCancelled()) {
+				return;
+			}
+		}
+	}
+
+	@EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
+	public void on_player_move_normal(final PlayerMoveEvent event) {
+		dispatch(event, normal_subscriptions);
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void on_player_move_monitor(final PlayerMoveEvent event) {
+		dispatch(event, monitor_subscriptions);
+	}
+}
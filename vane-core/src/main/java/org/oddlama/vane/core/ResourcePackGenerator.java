@@ -1,19 +1,22 @@
 package org.oddlama.vane.core;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.function.Consumer;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.ZipFile;
 import org.bukkit.NamespacedKey;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -87,15 +90,17 @@ public class ResourcePackGenerator {
 		return root.toString();
 	}
 
-	private void write_translations(final ZipOutputStream zip) throws IOException {
+	private static void put_json(final Map<String, byte[]> entries, final String path, final JSONObject json) {
+		entries.put(path, json.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void add_translations(final Map<String, byte[]> entries) {
 		for (var t : translations.entrySet()) {
 			var namespace = t.getKey();
 			for (var ns : t.getValue().entrySet()) {
 				var lang_code = ns.getKey();
 				var lang_map = ns.getValue();
-				zip.putNextEntry(new ZipEntry("assets/" + namespace + "/lang/" + lang_code + ".json"));
-				zip.write(lang_map.toString().getBytes(StandardCharsets.UTF_8));
-				zip.closeEntry();
+				put_json(entries, "assets/" + namespace + "/lang/" + lang_code + ".json", lang_map);
 			}
 		}
 	}
@@ -112,21 +117,18 @@ public class ResourcePackGenerator {
 		return model;
 	}
 
-	private void write_item_models(final ZipOutputStream zip) throws IOException {
+	private void add_item_models(final Map<String, byte[]> entries) {
 		for (var entry : item_textures.entrySet()) {
 			final var key = entry.getKey();
 			final var texture = entry.getValue();
 
-			// Write texture
-			zip.putNextEntry(new ZipEntry("assets/" + key.getNamespace() + "/textures/item/" + key.getKey() + ".png"));
-			zip.write(texture);
-			zip.closeEntry();
-
-			// Write model json
-			final var model = create_item_model_handheld(key);
-			zip.putNextEntry(new ZipEntry("assets/" + key.getNamespace() + "/models/item/" + key.getKey() + ".json"));
-			zip.write(model.toString().getBytes(StandardCharsets.UTF_8));
-			zip.closeEntry();
+			// Texture and model json
+			entries.put("assets/" + key.getNamespace() + "/textures/item/" + key.getKey() + ".png", texture);
+			put_json(
+				entries,
+				"assets/" + key.getNamespace() + "/models/item/" + key.getKey() + ".json",
+				create_item_model_handheld(key)
+			);
 		}
 	}
 
@@ -144,8 +146,19 @@ public class ResourcePackGenerator {
 		}
 	}
 
-	private void write_item_overrides(final ZipOutputStream zip) throws IOException {
-		for (var entry : item_overrides.entrySet()) {
+	private void add_item_overrides(
+		final Map<String, byte[]> entries,
+		final Collection<Map<NamespacedKey, List<JSONObject>>> all_overrides
+	) {
+		// Overrides of the same base item are merged into one model
+		final var merged = new HashMap<NamespacedKey, List<JSONObject>>();
+		for (final var overrides : all_overrides) {
+			for (final var entry : overrides.entrySet()) {
+				merged.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(entry.getValue());
+			}
+		}
+
+		for (var entry : merged.entrySet()) {
 			final var key = entry.getKey();
 
 			// Create sorted JSONArray
@@ -157,30 +170,84 @@ public class ResourcePackGenerator {
 			final var model = create_item_model_handheld(key);
 			model.put("overrides", overrides);
 
-			// Write item model override
-			zip.putNextEntry(new ZipEntry("assets/" + key.getNamespace() + "/models/item/" + key.getKey() + ".json"));
-			zip.write(model.toString().getBytes(StandardCharsets.UTF_8));
-			zip.closeEntry();
+			// Item model override
+			put_json(entries, "assets/" + key.getNamespace() + "/models/item/" + key.getKey() + ".json", model);
 		}
 	}
 
-	public void write(File file) throws IOException {
-		try (var zip = new ZipOutputStream(new FileOutputStream(file))) {
-			zip.putNextEntry(new ZipEntry("pack.mcmeta"));
-			zip.write(generate_pack_mcmeta().getBytes(StandardCharsets.UTF_8));
-			zip.closeEntry();
+	public Map<NamespacedKey, List<JSONObject>> item_overrides() {
+		return item_overrides;
+	}
 
-			if (icon_png_content != null) {
-				zip.putNextEntry(new ZipEntry("pack.png"));
-				zip.write(icon_png_content);
-				zip.closeEntry();
-			}
+	/**
+	 * Returns the files that only this generator can contain, by path: translations
+	 * and item models. Item overrides are left out, as the overrides of all modules
+	 * for the same base item end up in the same file.
+	 */
+	public Map<String, byte[]> own_entries() {
+		final var entries = new TreeMap<String, byte[]>();
+		add_translations(entries);
+		add_item_models(entries);
+		return entries;
+	}
+
+	/**
+	 * Returns pack.mcmeta, the icon and the merged item models of the given overrides, by path.
+	 */
+	public Map<String, byte[]> shared_entries(final Collection<Map<NamespacedKey, List<JSONObject>>> all_overrides) {
+		final var entries = new TreeMap<String, byte[]>();
+		entries.put("pack.mcmeta", generate_pack_mcmeta().getBytes(StandardCharsets.UTF_8));
+		if (icon_png_content != null) {
+			entries.put("pack.png", icon_png_content);
+		}
+
+		add_item_overrides(entries, all_overrides);
+		return entries;
+	}
+
+	public static MessageDigest sha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-1 is not available", e);
+		}
+	}
+
+	public static String hex(final byte[] bytes) {
+		final var sb = new StringBuilder(2 * bytes.length);
+		for (final var b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns a hash over the paths and contents of the given entries.
+	 */
+	public static String content_hash(final Map<String, byte[]> entries) {
+		final var digest = sha1();
+		for (final var entry : entries.entrySet()) {
+			digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(ByteBuffer.allocate(4).putInt(entry.getValue().length).array());
+			digest.update(entry.getValue());
+		}
+		return hex(digest.digest());
+	}
+
+	/**
+	 * Returns the comment of the given archive, or null if it cannot be read.
+	 */
+	public static String read_comment(final File file) {
+		if (!file.exists()) {
+			return null;
+		}
 
-			write_translations(zip);
-			write_item_models(zip);
-			write_item_overrides(zip);
+		try (var zip = new ZipFile(file)) {
+			return zip.getComment();
 		} catch (IOException e) {
-			throw e;
+			return null;
 		}
 	}
 }
@@ -0,0 +1,359 @@
+package org.oddlama.vane.core;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes resource pack archives on a single background thread, so archives are
+ * never written concurrently. The files of each module are compressed once and
+ * kept together with the content hash of that module's part. If a module's part
+ * is unchanged in the next generation, its compressed files are copied into the
+ * new archive as they are.
+ *
+ * The content hash of the whole pack is stored as the archive comment, and a sidecar
+ * file next to the archive records it together with the archive's sha1. The sidecar
+ * can therefore be verified against the archive it belongs to.
+ */
+public class ResourcePackWriter {
+
+	// Changing the archive layout or compression must change this, as the content hash
+	// of a pack is only expected to identify the archive's bytes for the same format.
+	private static final String FORMAT = "vane-resource-pack-1";
+
+	// 1980-01-01 00:00, the earliest date a zip entry can store
+	private static final int ZIP_DOS_DATE = (1 << 5) | 1;
+	private static final int ZIP_DOS_TIME = 0;
+	// Entry names are encoded in UTF-8
+	private static final int ZIP_FLAGS = 0x0800;
+	private static final int ZIP_VERSION = 20;
+	private static final int ZIP_METHOD_DEFLATED = 8;
+
+	private static class Entry {
+
+		private final byte[] name;
+		private final byte[] data;
+		private final int crc;
+		private final int size;
+
+		private Entry(final String name, final byte[] content) {
+			this.name = name.getBytes(StandardCharsets.UTF_8);
+			this.data = deflate(content);
+			this.size = content.length;
+
+			final var crc = new CRC32();
+			crc.update(content);
+			this.crc = (int) crc.getValue();
+		}
+	}
+
+	private static class Part {
+
+		private final String content_hash;
+		private final Map<String, Entry> entries = new TreeMap<>();
+
+		private Part(final String content_hash, final Map<String, byte[]> files) {
+			this.content_hash = content_hash;
+			for (final var file : files.entrySet()) {
+				entries.put(file.getKey(), new Entry(file.getKey(), file.getValue()));
+			}
+		}
+	}
+
+	/**
+	 * All files of one resource pack generation. It is filled on the main thread
+	 * and must not be modified after it was passed to the writer.
+	 */
+	public static class Snapshot {
+
+		// module name → files that belong to this module alone, in module order
+		private final Map<String, Map<String, byte[]>> module_files = new LinkedHashMap<>();
+		private Map<String, byte[]> shared_files = new TreeMap<>();
+
+		public void add_module(final String name, final Map<String, byte[]> files) {
+			module_files.put(name, files);
+		}
+
+		public void set_shared(final Map<String, byte[]> files) {
+			this.shared_files = files;
+		}
+	}
+
+	private final Core core;
+	private ThreadPoolExecutor executor = null;
+
+	// module name → compressed part of the last generation. Only accessed by the writer thread.
+	private final Map<String, Part> parts = new HashMap<>();
+
+	public ResourcePackWriter(final Core core) {
+		this.core = core;
+	}
+
+	private synchronized ThreadPoolExecutor executor() {
+		if (executor == null) {
+			executor =
+				new ThreadPoolExecutor(
+					1,
+					1,
+					0l,
+					TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<>(),
+					r -> {
+						final var thread = new Thread(r, "vane-resource-pack");
+						thread.setDaemon(true);
+						return thread;
+					}
+				);
+		}
+		return executor;
+	}
+
+	/**
+	 * Writes the given snapshot to the given file in the background. Writes are
+	 * executed in the order they were requested. The returned future completes
+	 * with true if the archive was written or is already up to date.
+	 */
+	public CompletableFuture<Boolean> write_async(final Snapshot snapshot, final File file) {
+		return CompletableFuture.supplyAsync(() -> write(snapshot, file), executor());
+	}
+
+	/**
+	 * Stops the background writer after all pending writes have finished.
+	 */
+	public synchronized void shutdown() {
+		if (executor == null) {
+			return;
+		}
+
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+				core.log.severe("Timed out while waiting for the resource pack to be written!");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		executor = null;
+	}
+
+	public static File sidecar_file(final File file) {
+		return new File(file.getPath() + ".sha1");
+	}
+
+	/**
+	 * Returns the sha1 recorded in the sidecar of the given archive, or null if there
+	 * is no sidecar, or if it doesn't belong to the archive's current content.
+	 */
+	public static String verified_sha1(final File file) {
+		final var sidecar = sidecar_file(file);
+		if (!sidecar.exists()) {
+			return null;
+		}
+
+		final var properties = new Properties();
+		try (final var in = new FileInputStream(sidecar)) {
+			properties.load(in);
+		} catch (IOException e) {
+			return null;
+		}
+
+		final var content_hash = properties.getProperty("content_hash");
+		if (content_hash == null || !content_hash.equals(ResourcePackGenerator.read_comment(file))) {
+			return null;
+		}
+		return properties.getProperty("sha1");
+	}
+
+	private boolean write(final Snapshot snapshot, final File file) {
+		try {
+			// Compress the parts of changed modules, and reuse all others
+			var reused = 0;
+			final var digest = ResourcePackGenerator.sha1();
+			digest.update(FORMAT.getBytes(StandardCharsets.UTF_8));
+			final var current_parts = new ArrayList<Part>();
+			for (final var module : snapshot.module_files.entrySet()) {
+				final var content_hash = ResourcePackGenerator.content_hash(module.getValue());
+				var part = parts.get(module.getKey());
+				if (part != null && part.content_hash.equals(content_hash)) {
+					++reused;
+				} else {
+					part = new Part(content_hash, module.getValue());
+					parts.put(module.getKey(), part);
+				}
+
+				current_parts.add(part);
+				digest.update(module.getKey().getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+				digest.update(content_hash.getBytes(StandardCharsets.UTF_8));
+			}
+			parts.keySet().retainAll(snapshot.module_files.keySet());
+
+			// Shared files are small and always compressed again
+			final var shared_hash = ResourcePackGenerator.content_hash(snapshot.shared_files);
+			digest.update(shared_hash.getBytes(StandardCharsets.UTF_8));
+			final var content_hash = ResourcePackGenerator.hex(digest.digest());
+
+			// An archive of the same content is byte-identical, so it doesn't have to be rewritten
+			if (content_hash.equals(ResourcePackGenerator.read_comment(file)) && verified_sha1(file) != null) {
+				core.log.info("Resource pack is unchanged");
+				return true;
+			}
+
+			// Entries are written sorted by path, so equal content always yields the same archive
+			final var entries = new TreeMap<String, Entry>();
+			for (final var part : current_parts) {
+				entries.putAll(part.entries);
+			}
+			for (final var shared : snapshot.shared_files.entrySet()) {
+				entries.put(shared.getKey(), new Entry(shared.getKey(), shared.getValue()));
+			}
+
+			final var sha1 = write_archive(entries.values(), file, content_hash);
+			Files.writeString(
+				sidecar_file(file).toPath(),
+				"sha1=" + sha1 + "\ncontent_hash=" + content_hash + "\n",
+				StandardCharsets.UTF_8
+			);
+			core.log.info(
+				"Generated resource pack with sha1 " +
+				sha1 +
+				" (reused " +
+				reused +
+				" of " +
+				current_parts.size() +
+				" module parts)"
+			);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			core.log.log(Level.SEVERE, "Error while writing resourcepack", e);
+			return false;
+		}
+	}
+
+	private static byte[] deflate(final byte[] content) {
+		final var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try {
+			deflater.setInput(content);
+			deflater.finish();
+			final var out = new ByteArrayOutputStream(Math.max(64, content.length / 2));
+			final var buffer = new byte[8192];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static void put_short(final OutputStream out, int value) throws IOException {
+		out.write(value & 0xff);
+		out.write((value >>> 8) & 0xff);
+	}
+
+	private static void put_int(final OutputStream out, int value) throws IOException {
+		put_short(out, value);
+		put_short(out, value >>> 16);
+	}
+
+	private static void put_entry_info(final OutputStream out, final Entry entry) throws IOException {
+		put_short(out, ZIP_VERSION);
+		put_short(out, ZIP_FLAGS);
+		put_short(out, ZIP_METHOD_DEFLATED);
+		put_short(out, ZIP_DOS_TIME);
+		put_short(out, ZIP_DOS_DATE);
+		put_int(out, entry.crc);
+		put_int(out, entry.data.length);
+		put_int(out, entry.size);
+		put_short(out, entry.name.length);
+		// Extra field length
+		put_short(out, 0);
+	}
+
+	/**
+	 * Writes the given compressed entries as a zip archive and returns its sha1, which is
+	 * computed while writing. The archive is written to a temporary file in the same
+	 * directory and then moved into place atomically.
+	 */
+	private static String write_archive(final Iterable<Entry> entries, final File file, final String comment)
+		throws IOException {
+		final var digest = ResourcePackGenerator.sha1();
+		final var dir = file.getAbsoluteFile().getParentFile().toPath();
+		final var tmp_file = Files.createTempFile(dir, file.getName(), ".tmp");
+		try {
+			try (
+				var out = new DigestOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tmp_file), 1 << 16),
+					digest
+				)
+			) {
+				// Local file headers and data
+				final var offsets = new ArrayList<Integer>();
+				var offset = 0;
+				for (final var entry : entries) {
+					offsets.add(offset);
+					put_int(out, 0x04034b50);
+					put_entry_info(out, entry);
+					out.write(entry.name);
+					out.write(entry.data);
+					offset += 30 + entry.name.length + entry.data.length;
+				}
+
+				// Central directory
+				final var directory_offset = offset;
+				var i = 0;
+				for (final var entry : entries) {
+					put_int(out, 0x02014b50);
+					// Version made by
+					put_short(out, ZIP_VERSION);
+					put_entry_info(out, entry);
+					// Comment length, disk number, internal and external attributes
+					put_short(out, 0);
+					put_short(out, 0);
+					put_short(out, 0);
+					put_int(out, 0);
+					put_int(out, offsets.get(i++));
+					out.write(entry.name);
+					offset += 46 + entry.name.length;
+				}
+
+				// End of central directory
+				final var comment_bytes = comment.getBytes(StandardCharsets.UTF_8);
+				put_int(out, 0x06054b50);
+				put_short(out, 0);
+				put_short(out, 0);
+				put_short(out, offsets.size());
+				put_short(out, offsets.size());
+				put_int(out, offset - directory_offset);
+				put_int(out, directory_offset);
+				put_short(out, comment_bytes.length);
+				out.write(comment_bytes);
+			}
+
+			Files.move(tmp_file, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp_file);
+		}
+		return ResourcePackGenerator.hex(digest.digest());
+	}
+}
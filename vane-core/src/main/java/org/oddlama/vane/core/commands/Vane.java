@@ -1,5 +1,8 @@
 package org.oddlama.vane.core.commands;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
 import org.bukkit.command.CommandSender;
 import org.oddlama.vane.annotation.command.Name;
 import org.oddlama.vane.annotation.lang.LangMessage;
@@ -12,6 +15,9 @@ import org.oddlama.vane.core.module.Module;
 @Name("vane")
 public class Vane extends Command<Core> {
 
+	// Number of histograms listed by /vane metrics
+	private static final int METRICS_SHOWN = 15;
+
 	@LangMessage
 	private TranslatedMessage lang_reload_success;
 
@@ -24,6 +30,18 @@ public class Vane extends Command<Core> {
 	@LangMessage
 	private TranslatedMessage lang_resource_pack_generate_fail;
 
+	@LangMessage
+	private TranslatedMessage lang_export_storage_success;
+
+	@LangMessage
+	private TranslatedMessage lang_export_storage_fail;
+
+	@LangMessage
+	private TranslatedMessage lang_metrics_header;
+
+	@LangMessage
+	private TranslatedMessage lang_metrics_reset;
+
 	public Vane(Context<Core> context) {
 		super(context);
 		// Add help
@@ -35,6 +53,12 @@ public class Vane extends Command<Core> {
 		reload.choose_module().exec(this::reload_module);
 
 		params().fixed("generate_resource_pack").ignore_case().exec(this::generate_resource_pack);
+
+		params().fixed("export_storage").ignore_case().choose_module().exec(this::export_storage);
+
+		var metrics = params().fixed("metrics").ignore_case();
+		metrics.exec(this::print_metrics);
+		metrics.fixed("reset").ignore_case().exec(this::reset_metrics);
 	}
 
 	private void reload_module(CommandSender sender, Module<?> module) {
@@ -51,11 +75,59 @@ public class Vane extends Command<Core> {
 		}
 	}
 
-	private void generate_resource_pack(CommandSender sender) {
-		if (get_module().generate_resource_pack()) {
-			lang_resource_pack_generate_success.send(sender);
-		} else {
-			lang_resource_pack_generate_fail.send(sender);
+	private void export_storage(CommandSender sender, Module<?> module) {
+		final var file = new File(module.getDataFolder(), "storage-export.json");
+		try {
+			module.persistent_storage_manager.export_json(file);
+			lang_export_storage_success.send(sender, "§bvane-" + module.get_name(), file.getPath());
+		} catch (IOException e) {
+			module.log.log(Level.SEVERE, "Error while exporting persistent storage to '" + file + "'", e);
+			lang_export_storage_fail.send(sender, "§bvane-" + module.get_name());
+		}
+	}
+
+	private void print_metrics(CommandSender sender) {
+		final var registry = get_module().metrics_registry;
+		lang_metrics_header.send(sender);
+
+		final var histograms = registry.slowest_histograms();
+		for (int i = 0; i < Math.min(METRICS_SHOWN, histograms.size()); ++i) {
+			final var h = histograms.get(i);
+			sender.sendMessage(
+				String.format(
+					"§b%s§7: §a%d §7× §a%.1f §7/ §a%.1f §7/ §6%.1f §7/ §c%.1f",
+					h.name(),
+					h.count(),
+					h.mean_nanos() / 1000.0,
+					h.quantile_nanos(0.5) / 1000.0,
+					h.quantile_nanos(0.99) / 1000.0,
+					h.max_nanos() / 1000.0
+				)
+			);
+		}
+
+		for (final var c : registry.counters()) {
+			sender.sendMessage("§b" + c.name() + "§7: §a" + c.get());
 		}
 	}
+
+	private void reset_metrics(CommandSender sender) {
+		get_module().metrics_registry.reset();
+		lang_metrics_reset.send(sender);
+	}
+
+	private void generate_resource_pack(CommandSender sender) {
+		get_module()
+			.generate_resource_pack()
+			.thenAccept(success -> {
+				// The archive is written asynchronously, so report back on the main thread
+				schedule_next_tick(() -> {
+					if (success) {
+						lang_resource_pack_generate_success.send(sender);
+					} else {
+						lang_resource_pack_generate_fail.send(sender);
+					}
+				});
+			});
+	}
 }
@@ -1,5 +1,9 @@
 package org.oddlama.vane.core.item;
 
+import static org.oddlama.vane.util.Nms.NO_CUSTOM_MODEL_DATA;
+import static org.oddlama.vane.util.Nms.custom_model_data;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -23,7 +27,7 @@ public class CustomItem<T extends Module<T>, V extends CustomItem<T, V>> extends
 	// Track instances
 	private static final Map<Class<?>, CustomItem<?, ?>> instances = new HashMap<>();
 	// Reverse lookup model data -> custom item class, variant
-	private static final Map<Integer, ReverseLookupEntry> reverse_lookup = new HashMap<>();
+	private static final Int2ObjectOpenHashMap<ReverseLookupEntry> reverse_lookup = new Int2ObjectOpenHashMap<>();
 
 	private VaneItem annotation = getClass().getAnnotation(VaneItem.class);
 	private String name;
@@ -179,15 +183,15 @@ public class CustomItem<T extends Module<T>, V extends CustomItem<T, V>> extends
 	}
 
 	public static boolean is_custom_item(@NotNull ItemStack item) {
-		return item.hasItemMeta() && item.getItemMeta().hasCustomModelData();
+		return custom_model_data(item) != NO_CUSTOM_MODEL_DATA;
 	}
 
 	public static ReverseLookupEntry from_item(@NotNull ItemStack item) {
-		final var meta = item.getItemMeta();
-		if (!meta.hasCustomModelData()) {
+		final var custom_model_data = custom_model_data(item);
+		if (custom_model_data == NO_CUSTOM_MODEL_DATA) {
 			return null;
 		}
-		return from_model_data(meta.getCustomModelData());
+		return from_model_data(custom_model_data);
 	}
 
 	public static ReverseLookupEntry from_model_data(int model_data) {
@@ -200,16 +204,12 @@ public class CustomItem<T extends Module<T>, V extends CustomItem<T, V>> extends
 	 */
 	@SuppressWarnings("unchecked")
 	public <U> U variant_of(@NotNull ItemStack item) {
-		final var meta = item.getItemMeta();
-		if (meta == null) {
-			return null;
-		}
-		if (!meta.hasCustomModelData()) {
+		final var custom_model_data = custom_model_data(item);
+		if (custom_model_data == NO_CUSTOM_MODEL_DATA) {
 			return null;
 		}
 
 		// Check custom model data range
-		final var custom_model_data = meta.getCustomModelData();
 		if (
 			model_data_range_lower_bound() <= custom_model_data && custom_model_data <= model_data_range_upper_bound()
 		) {
@@ -0,0 +1,33 @@
+package org.oddlama.vane.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter {
+
+	private final String name;
+	private final LongAdder value = new LongAdder();
+
+	public Counter(final String name) {
+		this.name = name;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public void increment() {
+		value.increment();
+	}
+
+	public void add(long amount) {
+		value.add(amount);
+	}
+
+	public long get() {
+		return value.sum();
+	}
+
+	public void reset() {
+		value.reset();
+	}
+}
@@ -0,0 +1,123 @@
+package org.oddlama.vane.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONObject;
+
+/**
+ * Records durations in nanoseconds into log-linear buckets, like an HDR histogram.
+ * Each power of two is split into SUB_BUCKETS linear buckets, so every recorded value
+ * is within 12.5% of its bucket's upper bound, while the whole range of a long fits
+ * in a few hundred buckets.
+ * Recording is lock-free, so handlers of asynchronous events may be timed, too.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final String name;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total_nanos = new LongAdder();
+	private final AtomicLong max_nanos = new AtomicLong();
+
+	public LatencyHistogram(final String name) {
+		this.name = name;
+	}
+
+	private static int bucket_of(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		final var exponent = 63 - Long.numberOfLeadingZeros(value);
+		final var sub_bucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub_bucket;
+	}
+
+	private static long upper_bound_of(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		final var shift = bucket / SUB_BUCKETS - 1;
+		final var sub_bucket = bucket % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + sub_bucket + 1) << shift) - 1;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+
+		buckets.incrementAndGet(bucket_of(nanos));
+		count.increment();
+		total_nanos.add(nanos);
+		max_nanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	public long count() {
+		return count.sum();
+	}
+
+	public long total_nanos() {
+		return total_nanos.sum();
+	}
+
+	public long max_nanos() {
+		return max_nanos.get();
+	}
+
+	public double mean_nanos() {
+		final var n = count();
+		return n == 0 ? 0.0 : (double) total_nanos() / n;
+	}
+
+	/**
+	 * Returns an upper bound for the given quantile (0.0 - 1.0) of all recorded values.
+	 */
+	public long quantile_nanos(double quantile) {
+		final var n = count();
+		if (n == 0) {
+			return 0;
+		}
+
+		final var rank = Math.max(1, (long) Math.ceil(quantile * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(upper_bound_of(i), max_nanos());
+			}
+		}
+		return max_nanos();
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; ++i) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		total_nanos.reset();
+		max_nanos.set(0);
+	}
+
+	public JSONObject to_json() {
+		final var json = new JSONObject();
+		json.put("count", count());
+		json.put("total_us", total_nanos() / 1000);
+		json.put("mean_us", mean_nanos() / 1000.0);
+		json.put("p50_us", quantile_nanos(0.5) / 1000.0);
+		json.put("p90_us", quantile_nanos(0.9) / 1000.0);
+		json.put("p99_us", quantile_nanos(0.99) / 1000.0);
+		json.put("max_us", max_nanos() / 1000.0);
+		return json;
+	}
+}
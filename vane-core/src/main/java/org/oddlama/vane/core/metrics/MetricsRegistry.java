@@ -0,0 +1,215 @@
+package org.oddlama.vane.core.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.json.JSONObject;
+import org.oddlama.vane.core.module.Context;
+import org.oddlama.vane.core.module.Module;
+import org.oddlama.vane.core.module.ModuleComponent;
+
+/**
+ * Shared registry of counters and latency histograms of all vane modules.
+ * Metrics are named "<module>/<kind>/<name>", e.g. "regions/event/RegionRoleSettingEnforcer.on_block_break".
+ */
+public class MetricsRegistry {
+
+	private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+	// Classes whose methods only pass a task on to the bukkit scheduler
+	private static final Set<Class<?>> SCHEDULING_CLASSES = Set.of(
+		MetricsRegistry.class,
+		Context.class,
+		ModuleComponent.class
+	);
+
+	private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+	private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+	private volatile boolean timings_enabled = true;
+
+	public boolean timings_enabled() {
+		return timings_enabled;
+	}
+
+	/**
+	 * Enables or disables timing of event handlers and bukkit tasks. This only
+	 * affects listeners and tasks that are registered afterwards.
+	 */
+	public void timings_enabled(boolean enabled) {
+		this.timings_enabled = enabled;
+	}
+
+	public LatencyHistogram histogram(final String name) {
+		return histograms.computeIfAbsent(name, LatencyHistogram::new);
+	}
+
+	public Counter counter(final String name) {
+		return counters.computeIfAbsent(name, Counter::new);
+	}
+
+	/**
+	 * Returns all histograms, ordered by descending 99th percentile.
+	 */
+	public List<LatencyHistogram> slowest_histograms() {
+		final var result = new ArrayList<>(histograms.values());
+		result.removeIf(h -> h.count() == 0);
+		result.sort(Comparator.comparingLong((LatencyHistogram h) -> h.quantile_nanos(0.99)).reversed());
+		return result;
+	}
+
+	public List<Counter> counters() {
+		final var result = new ArrayList<>(counters.values());
+		result.sort(Comparator.comparing(Counter::name));
+		return result;
+	}
+
+	public void reset() {
+		histograms.values().forEach(LatencyHistogram::reset);
+		counters.values().forEach(Counter::reset);
+	}
+
+	private static String simple_name(final Class<?> cls) {
+		// Lambdas are named after their declaring class, followed by "$$Lambda$..."
+		var name = cls.getName();
+		final var lambda = name.indexOf("$$Lambda");
+		if (lambda != -1) {
+			name = name.substring(0, lambda);
+		}
+		return name.substring(name.lastIndexOf('.') + 1);
+	}
+
+	private static String simple_method_name(final String name) {
+		// Lambdas are implemented by methods named "lambda$<enclosing method>$<index>"
+		if (name.startsWith("lambda$")) {
+			final var end = name.lastIndexOf('$');
+			return name.substring("lambda$".length(), end > "lambda$".length() ? end : name.length());
+		}
+		return name;
+	}
+
+	/**
+	 * Returns "<class>.<method>" of the code that scheduled a task, skipping vane's own scheduling methods.
+	 */
+	private static String call_site() {
+		return STACK_WALKER.walk(frames ->
+			frames
+				.filter(f -> !SCHEDULING_CLASSES.contains(f.getDeclaringClass()))
+				.findFirst()
+				.map(f -> simple_name(f.getDeclaringClass()) + "." + simple_method_name(f.getMethodName()))
+				.orElse("unknown")
+		);
+	}
+
+	/**
+	 * Wraps the given bukkit task, so its execution time is recorded in a histogram
+	 * named after the method that scheduled the task, e.g. "regions/task/Regions.on_enable".
+	 */
+	public Runnable timed(final Module<?> module, final Runnable task) {
+		if (!timings_enabled) {
+			return task;
+		}
+
+		final var histogram = histogram(module.get_name() + "/task/" + call_site());
+		return () -> {
+			final var start = System.nanoTime();
+			try {
+				task.run();
+			} finally {
+				histogram.record(System.nanoTime() - start);
+			}
+		};
+	}
+
+	/**
+	 * Registers all event handlers of the given listener like
+	 * {@link org.bukkit.plugin.PluginManager#registerEvents(Listener, org.bukkit.plugin.Plugin)},
+	 * but records the execution time of each handler in its own histogram.
+	 */
+	public void register_timed_events(final Listener listener, final Module<?> module) {
+		final var methods = new HashSet<Method>();
+		Collections.addAll(methods, listener.getClass().getMethods());
+		Collections.addAll(methods, listener.getClass().getDeclaredMethods());
+
+		final var listener_name = simple_name(listener.getClass());
+		for (final var method : methods) {
+			final var handler = method.getAnnotation(EventHandler.class);
+			if (handler == null || method.isBridge() || method.isSynthetic()) {
+				continue;
+			}
+
+			final var params = method.getParameterTypes();
+			if (params.length != 1 || !Event.class.isAssignableFrom(params[0])) {
+				module.log.severe(
+					"Invalid event handler " + listener_name + "." + method.getName() + ", it will not be registered"
+				);
+				continue;
+			}
+
+			final var event_class = params[0].asSubclass(Event.class);
+			final var executor = EventExecutor.create(method, event_class);
+			final var histogram = histogram(module.get_name() + "/event/" + listener_name + "." + method.getName());
+			module
+				.getServer()
+				.getPluginManager()
+				.registerEvent(
+					event_class,
+					listener,
+					handler.priority(),
+					(l, event) -> {
+						final var start = System.nanoTime();
+						try {
+							executor.execute(l, event);
+						} finally {
+							histogram.record(System.nanoTime() - start);
+						}
+					},
+					module,
+					handler.ignoreCancelled()
+				);
+		}
+	}
+
+	public JSONObject to_json() {
+		final var json = new JSONObject();
+		final var json_histograms = new JSONObject();
+		for (final var h : histograms.values()) {
+			json_histograms.put(h.name(), h.to_json());
+		}
+		final var json_counters = new JSONObject();
+		for (final var c : counters.values()) {
+			json_counters.put(c.name(), c.get());
+		}
+		json.put("time", System.currentTimeMillis());
+		json.put("histograms", json_histograms);
+		json.put("counters", json_counters);
+		return json;
+	}
+
+	/**
+	 * Writes the given snapshot of {@link #to_json()} to the given file.
+	 */
+	public static void dump(final JSONObject snapshot, final File file) throws IOException {
+		final var tmp_file = new File(file.getAbsolutePath() + ".tmp");
+		Files.writeString(tmp_file.toPath(), snapshot.toString(2), StandardCharsets.UTF_8);
+		Files.move(
+			tmp_file.toPath(),
+			file.toPath(),
+			StandardCopyOption.REPLACE_EXISTING,
+			StandardCopyOption.ATOMIC_MOVE
+		);
+	}
+}
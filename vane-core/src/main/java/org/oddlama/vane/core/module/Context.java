@@ -6,6 +6,8 @@ import org.bukkit.scheduler.BukkitTask;
 import org.json.JSONObject;
 import org.oddlama.vane.core.ResourcePackGenerator;
 import org.oddlama.vane.core.functional.Consumer1;
+import org.oddlama.vane.core.scheduler.SlicedJob;
+import org.oddlama.vane.core.scheduler.TickScheduler;
 
 /**
  * A ModuleContext is an association to a specific Module and also a
@@ -86,18 +88,57 @@ public interface Context<T extends Module<T>> {
 
 	public default void on_config_change() {}
 
+	/**
+	 * Adds this component's content to the resource pack. This is called on the thread
+	 * that requested the generation, usually the main thread, and never concurrently
+	 * with the generation of other modules. Only writing the archive is asynchronous.
+	 */
 	public default void on_generate_resource_pack(final ResourcePackGenerator pack) throws IOException {}
 
+	// Records the execution time of bukkit tasks in the shared metrics registry
+	private Runnable timed(Runnable task) {
+		return get_module().core.metrics_registry.timed(get_module(), task);
+	}
+
 	public default BukkitTask schedule_task_timer(Runnable task, long delay_ticks, long period_ticks) {
-		return get_module().getServer().getScheduler().runTaskTimer(get_module(), task, delay_ticks, period_ticks);
+		return get_module()
+			.getServer()
+			.getScheduler()
+			.runTaskTimer(get_module(), timed(task), delay_ticks, period_ticks);
 	}
 
 	public default BukkitTask schedule_task(Runnable task, long delay_ticks) {
-		return get_module().getServer().getScheduler().runTaskLater(get_module(), task, delay_ticks);
+		return get_module().getServer().getScheduler().runTaskLater(get_module(), timed(task), delay_ticks);
 	}
 
 	public default BukkitTask schedule_next_tick(Runnable task) {
-		return get_module().getServer().getScheduler().runTask(get_module(), task);
+		return get_module().getServer().getScheduler().runTask(get_module(), timed(task));
+	}
+
+	/**
+	 * Schedules a periodic task on the shared vane scheduler, which offsets the first
+	 * execution so that timers of different modules are spread across ticks.
+	 */
+	public default TickScheduler.Task schedule_spread_timer(
+		String name,
+		Runnable task,
+		long delay_ticks,
+		long period_ticks
+	) {
+		return get_module().core.scheduler.schedule_timer(get_module(), name, task, delay_ticks, period_ticks);
+	}
+
+	/**
+	 * Submits a job to the shared vane scheduler, which runs it slice by slice
+	 * using at most budget_ms per tick.
+	 */
+	public default TickScheduler.Task schedule_sliced_job(
+		String name,
+		TickScheduler.Priority priority,
+		double budget_ms,
+		SlicedJob job
+	) {
+		return get_module().core.scheduler.submit(get_module(), name, priority, budget_ms, job);
 	}
 
 	public default void add_storage_migration_to(long to, String name, Consumer<JSONObject> migrator) {
@@ -114,4 +155,21 @@ public interface Context<T extends Module<T>> {
 	public default void mark_persistent_storage_dirty() {
 		get_module().mark_persistent_storage_dirty();
 	}
+
+	/**
+	 * Records a changed map entry of the given persistent field, so it can be
+	 * written without rewriting the whole storage file. Keys address the
+	 * entry in (possibly nested) maps, e.g. journal_persistent_storage_put("storage_portals", portal, portal.id()).
+	 */
+	public default void journal_persistent_storage_put(String field, Object value, Object... keys) {
+		get_module().persistent_storage_manager.journal_put(storage_path_of(field), value, keys);
+	}
+
+	/**
+	 * Records a removed map entry of the given persistent field.
+	 * See {@link #journal_persistent_storage_put(String, Object, Object...)}.
+	 */
+	public default void journal_persistent_storage_remove(String field, Object... keys) {
+		get_module().persistent_storage_manager.journal_remove(storage_path_of(field), keys);
+	}
 }
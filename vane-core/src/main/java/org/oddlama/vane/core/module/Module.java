@@ -91,6 +91,16 @@ public abstract class Module<T extends Module<T>> extends JavaPlugin implements
 	)
 	public boolean config_metrics_enabled;
 
+	@ConfigBoolean(
+		def = false,
+		desc = "Store persistent data in a compact binary file instead of JSON. Existing data is converted on the next start."
+	)
+	public boolean config_binary_storage;
+
+	public boolean config_binary_storage_def() {
+		return annotation.binary_storage();
+	}
+
 	// Context<T> interface proxy
 	private ModuleGroup<T> context_group = new ModuleGroup<>(
 		this,
@@ -214,15 +224,20 @@ public abstract class Module<T extends Module<T>> extends JavaPlugin implements
 		// Get protocollib manager
 		protocol_manager = ProtocolLibrary.getProtocolManager();
 
-		load_persistent_storage();
 		reload_configuration();
 
 		// Schedule persistent storage saving every minute
-		schedule_task_timer(
+		schedule_spread_timer(
+			"persistent_storage",
 			() -> {
-				if (persistent_storage_dirty) {
-					save_persistent_storage();
+				if (persistent_storage_dirty || persistent_storage_manager.needs_full_save()) {
+					save_persistent_storage_async();
 					persistent_storage_dirty = false;
+					core.metrics_registry.counter(get_name() + "/storage/full_saves").increment();
+				} else {
+					// Only append recorded changes to the journal
+					persistent_storage_manager.flush_journal_async(get_persistent_storage_file());
+					core.metrics_registry.counter(get_name() + "/storage/journal_flushes").increment();
 				}
 			},
 			60 * 20,
@@ -233,9 +248,11 @@ public abstract class Module<T extends Module<T>> extends JavaPlugin implements
 	@Override
 	public void onDisable() {
 		disable();
+		core.scheduler.cancel_all(this);
 
-		// Save persistent storage
+		// Save persistent storage synchronously and stop the background writer
 		save_persistent_storage();
+		persistent_storage_manager.shutdown();
 
 		// Unregister in core
 		core.unregister_module(this);
@@ -369,6 +386,12 @@ public abstract class Module<T extends Module<T>> extends JavaPlugin implements
 			return false;
 		}
 
+		// The storage format is configurable, so the persistent storage is loaded
+		// once the configuration is known, but before the module is enabled.
+		if (!persistent_storage_manager.is_loaded()) {
+			load_persistent_storage();
+		}
+
 		if (was_enabled && !enabled()) {
 			// Disable plugin if needed
 			disable();
@@ -383,7 +406,7 @@ public abstract class Module<T extends Module<T>> extends JavaPlugin implements
 
 	public File get_persistent_storage_file() {
 		// Generate new file if not existing
-		return new File(getDataFolder(), "storage.json");
+		return persistent_storage_manager.format().storage_file(getDataFolder());
 	}
 
 	public void load_persistent_storage() {
@@ -407,8 +430,18 @@ public abstract class Module<T extends Module<T>> extends JavaPlugin implements
 		persistent_storage_manager.save(file);
 	}
 
+	public void save_persistent_storage_async() {
+		// Capture automatic persistent variables now, write them in the background
+		final var file = get_persistent_storage_file();
+		persistent_storage_manager.save_async(file);
+	}
+
 	public void register_listener(Listener listener) {
-		getServer().getPluginManager().registerEvents(listener, this);
+		if (core.metrics_registry.timings_enabled()) {
+			core.metrics_registry.register_timed_events(listener, this);
+		} else {
+			getServer().getPluginManager().registerEvents(listener, this);
+		}
 	}
 
 	public void unregister_listener(Listener listener) {
@@ -5,6 +5,8 @@ import java.util.function.Consumer;
 import org.bukkit.scheduler.BukkitTask;
 import org.json.JSONObject;
 import org.oddlama.vane.core.ResourcePackGenerator;
+import org.oddlama.vane.core.scheduler.SlicedJob;
+import org.oddlama.vane.core.scheduler.TickScheduler;
 
 public abstract class ModuleComponent<T extends Module<T>> {
 
@@ -58,6 +60,24 @@ public abstract class ModuleComponent<T extends Module<T>> {
 		return context.schedule_next_tick(task);
 	}
 
+	public final TickScheduler.Task schedule_spread_timer(
+		String name,
+		Runnable task,
+		long delay_ticks,
+		long period_ticks
+	) {
+		return context.schedule_spread_timer(name, task, delay_ticks, period_ticks);
+	}
+
+	public final TickScheduler.Task schedule_sliced_job(
+		String name,
+		TickScheduler.Priority priority,
+		double budget_ms,
+		SlicedJob job
+	) {
+		return context.schedule_sliced_job(name, priority, budget_ms, job);
+	}
+
 	public final void add_storage_migration_to(long to, String name, Consumer<JSONObject> migrator) {
 		context.add_storage_migration_to(to, name, migrator);
 	}
@@ -69,4 +89,12 @@ public abstract class ModuleComponent<T extends Module<T>> {
 	public final void mark_persistent_storage_dirty() {
 		context.mark_persistent_storage_dirty();
 	}
+
+	public final void journal_persistent_storage_put(String field, Object value, Object... keys) {
+		context.journal_persistent_storage_put(field, value, keys);
+	}
+
+	public final void journal_persistent_storage_remove(String field, Object... keys) {
+		context.journal_persistent_storage_remove(field, keys);
+	}
 }
@@ -0,0 +1,438 @@
+package org.oddlama.vane.core.persistent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * A compact binary encoding of the json trees produced by {@link PersistentSerializer}.
+ * The serializers store everything as strings, so strings are encoded by their content:
+ * integers become zigzag varints, uuids become two longs and base64 blobs become raw bytes.
+ * Short strings and uuids are interned, so repeated keys and world ids are only stored once.
+ * Every string is restored exactly, so decoding yields the same json as before encoding.
+ */
+public class BinaryJson {
+
+	// "VANE"
+	private static final int MAGIC = 0x56414e45;
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int TAG_NULL = 0;
+	private static final int TAG_TRUE = 1;
+	private static final int TAG_FALSE = 2;
+	private static final int TAG_LONG = 3;
+	private static final int TAG_DOUBLE = 4;
+	private static final int TAG_DECIMAL = 5;
+	private static final int TAG_OBJECT = 6;
+	private static final int TAG_ARRAY = 7;
+	private static final int TAG_STRING = 8;
+	private static final int TAG_STRING_RAW = 9;
+	private static final int TAG_STRING_REF = 10;
+	private static final int TAG_STRING_LONG = 11;
+	private static final int TAG_STRING_UUID = 12;
+	private static final int TAG_STRING_UUID_REF = 13;
+	private static final int TAG_STRING_BASE64 = 14;
+
+	// Longer strings are unlikely to repeat and are not interned
+	private static final int MAX_INTERNED_LENGTH = 128;
+
+	/**
+	 * Writes the given object, but starts with the given keys (if present),
+	 * so they can be read before any other entry.
+	 */
+	public static void write(final JSONObject json, final List<String> first_keys, final OutputStream out)
+		throws IOException {
+		final var writer = new Writer(new DataOutputStream(out));
+		writer.out.writeInt(MAGIC);
+		writer.out.writeByte(FORMAT_VERSION);
+		writer.out.writeByte(TAG_OBJECT);
+		writer.write_varint(json.length());
+		for (final var key : first_keys) {
+			if (json.has(key)) {
+				writer.write_string(key);
+				writer.write_value(json.get(key));
+			}
+		}
+		for (final var key : json.keySet()) {
+			if (!first_keys.contains(key)) {
+				writer.write_string(key);
+				writer.write_value(json.get(key));
+			}
+		}
+		writer.out.flush();
+	}
+
+	/**
+	 * Reads the entries of the top-level object one at a time.
+	 * The returned reader does not close the given stream.
+	 */
+	public static StorageReader open(final InputStream in) throws IOException {
+		final var reader = new Reader(new DataInputStream(in));
+		if (reader.in.readInt() != MAGIC) {
+			throw new IOException("Not a binary storage file");
+		}
+
+		final var version = reader.in.readUnsignedByte();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported binary storage format version " + version);
+		}
+
+		if (reader.in.readUnsignedByte() != TAG_OBJECT) {
+			throw new IOException("Binary storage file does not contain an object");
+		}
+
+		final var length = reader.read_varint();
+		return new StorageReader() {
+			private int remaining = length;
+
+			@Override
+			public String next_key() throws IOException {
+				if (remaining == 0) {
+					return null;
+				}
+				--remaining;
+				return reader.read_string(reader.in.readUnsignedByte());
+			}
+
+			@Override
+			public Object next_value() throws IOException {
+				return reader.read_value();
+			}
+
+			@Override
+			public void close() {}
+		};
+	}
+
+	private static class Writer {
+
+		private final DataOutputStream out;
+		private final Map<String, Integer> strings = new HashMap<>();
+		private final Map<UUID, Integer> uuids = new HashMap<>();
+
+		private Writer(final DataOutputStream out) {
+			this.out = out;
+		}
+
+		private void write_value(final Object value) throws IOException {
+			if (value == null || value == JSONObject.NULL) {
+				out.writeByte(TAG_NULL);
+			} else if (value instanceof String) {
+				write_string((String) value);
+			} else if (value instanceof JSONObject) {
+				final var json = (JSONObject) value;
+				out.writeByte(TAG_OBJECT);
+				write_varint(json.length());
+				for (final var key : json.keySet()) {
+					write_string(key);
+					write_value(json.get(key));
+				}
+			} else if (value instanceof JSONArray) {
+				final var json = (JSONArray) value;
+				out.writeByte(TAG_ARRAY);
+				write_varint(json.length());
+				for (final var v : json) {
+					write_value(v);
+				}
+			} else if (value instanceof Boolean) {
+				out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+			} else if (
+				value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+			) {
+				out.writeByte(TAG_LONG);
+				write_varlong(((Number) value).longValue());
+			} else if (value instanceof Double || value instanceof Float) {
+				out.writeByte(TAG_DOUBLE);
+				out.writeDouble(((Number) value).doubleValue());
+			} else if (value instanceof BigDecimal || value instanceof BigInteger) {
+				out.writeByte(TAG_DECIMAL);
+				write_utf8(value.toString());
+			} else {
+				throw new IOException("Cannot encode " + value.getClass() + " in binary storage. This is a bug.");
+			}
+		}
+
+		private void write_string(final String s) throws IOException {
+			// Integers (coordinates, chunk keys, ...)
+			final var l = parse_canonical_long(s);
+			if (l != null) {
+				out.writeByte(TAG_STRING_LONG);
+				write_varlong(l);
+				return;
+			}
+
+			// Uuids (world ids, player ids, ...)
+			final var uuid = parse_canonical_uuid(s);
+			if (uuid != null) {
+				final var index = uuids.get(uuid);
+				if (index != null) {
+					out.writeByte(TAG_STRING_UUID_REF);
+					write_varint(index);
+				} else {
+					uuids.put(uuid, uuids.size());
+					out.writeByte(TAG_STRING_UUID);
+					out.writeLong(uuid.getMostSignificantBits());
+					out.writeLong(uuid.getLeastSignificantBits());
+				}
+				return;
+			}
+
+			final var index = strings.get(s);
+			if (index != null) {
+				out.writeByte(TAG_STRING_REF);
+				write_varint(index);
+				return;
+			}
+
+			if (s.length() <= MAX_INTERNED_LENGTH) {
+				strings.put(s, strings.size());
+				out.writeByte(TAG_STRING);
+				write_utf8(s);
+				return;
+			}
+
+			// Serialized item stacks and other blobs
+			final var bytes = parse_canonical_base64(s);
+			if (bytes != null) {
+				out.writeByte(TAG_STRING_BASE64);
+				write_varint(bytes.length);
+				out.write(bytes);
+				return;
+			}
+
+			out.writeByte(TAG_STRING_RAW);
+			write_utf8(s);
+		}
+
+		private void write_utf8(final String s) throws IOException {
+			final var bytes = s.getBytes(StandardCharsets.UTF_8);
+			write_varint(bytes.length);
+			out.write(bytes);
+		}
+
+		private void write_varint(int value) throws IOException {
+			while ((value & ~0x7f) != 0) {
+				out.writeByte((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			out.writeByte(value);
+		}
+
+		private void write_varlong(final long value) throws IOException {
+			// Zigzag encoding keeps small negative values short
+			long v = (value << 1) ^ (value >> 63);
+			while ((v & ~0x7fl) != 0) {
+				out.writeByte((int) ((v & 0x7f) | 0x80));
+				v >>>= 7;
+			}
+			out.writeByte((int) v);
+		}
+	}
+
+	private static class Reader {
+
+		private final DataInputStream in;
+		private final List<String> strings = new ArrayList<>();
+		private final List<String> uuids = new ArrayList<>();
+
+		private Reader(final DataInputStream in) {
+			this.in = in;
+		}
+
+		private Object read_value() throws IOException {
+			final var tag = in.readUnsignedByte();
+			switch (tag) {
+				case TAG_NULL:
+					return JSONObject.NULL;
+				case TAG_TRUE:
+					return Boolean.TRUE;
+				case TAG_FALSE:
+					return Boolean.FALSE;
+				case TAG_LONG:
+					return read_varlong();
+				case TAG_DOUBLE:
+					return in.readDouble();
+				case TAG_DECIMAL:
+					return new BigDecimal(read_utf8());
+				case TAG_OBJECT:
+					{
+						final var length = read_varint();
+						final var json = new JSONObject();
+						for (int i = 0; i < length; ++i) {
+							final var key = read_string(in.readUnsignedByte());
+							json.put(key, read_value());
+						}
+						return json;
+					}
+				case TAG_ARRAY:
+					{
+						final var length = read_varint();
+						final var json = new JSONArray();
+						for (int i = 0; i < length; ++i) {
+							json.put(read_value());
+						}
+						return json;
+					}
+				default:
+					return read_string(tag);
+			}
+		}
+
+		private String read_string(final int tag) throws IOException {
+			switch (tag) {
+				case TAG_STRING:
+					{
+						final var s = read_utf8();
+						strings.add(s);
+						return s;
+					}
+				case TAG_STRING_RAW:
+					return read_utf8();
+				case TAG_STRING_REF:
+					return lookup(strings, read_varint());
+				case TAG_STRING_LONG:
+					return String.valueOf(read_varlong());
+				case TAG_STRING_UUID:
+					{
+						final var s = new UUID(in.readLong(), in.readLong()).toString();
+						uuids.add(s);
+						return s;
+					}
+				case TAG_STRING_UUID_REF:
+					return lookup(uuids, read_varint());
+				case TAG_STRING_BASE64:
+					{
+						final var bytes = new byte[read_varint()];
+						in.readFully(bytes);
+						return Base64.getEncoder().encodeToString(bytes);
+					}
+				default:
+					throw new IOException("Invalid tag " + tag + " in binary storage");
+			}
+		}
+
+		private static String lookup(final List<String> table, int index) throws IOException {
+			if (index >= table.size()) {
+				throw new IOException("Invalid string reference " + index + " in binary storage");
+			}
+			return table.get(index);
+		}
+
+		private String read_utf8() throws IOException {
+			final var bytes = new byte[read_varint()];
+			in.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private int read_varint() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				final var b = in.readUnsignedByte();
+				value |= (b & 0x7f) << shift;
+				if ((b & 0x80) == 0) {
+					if (value < 0) {
+						throw new IOException("Invalid length in binary storage");
+					}
+					return value;
+				}
+			}
+			throw new IOException("Malformed varint in binary storage");
+		}
+
+		private long read_varlong() throws IOException {
+			long v = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				final var b = in.readUnsignedByte();
+				v |= (long) (b & 0x7f) << shift;
+				if ((b & 0x80) == 0) {
+					return (v >>> 1) ^ -(v & 1);
+				}
+			}
+			throw new IOException("Malformed varlong in binary storage");
+		}
+	}
+
+	private static Long parse_canonical_long(final String s) {
+		final var length = s.length();
+		if (length == 0 || length > 20) {
+			return null;
+		}
+
+		final var first = s.charAt(0);
+		if (first == '-') {
+			// "-0" and "-" are not canonical
+			if (length == 1 || s.charAt(1) == '0') {
+				return null;
+			}
+		} else if (first == '0' && length > 1) {
+			// Leading zeros are not canonical
+			return null;
+		}
+
+		for (int i = first == '-' ? 1 : 0; i < length; ++i) {
+			final var c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return null;
+			}
+		}
+
+		try {
+			return Long.parseLong(s);
+		} catch (NumberFormatException e) {
+			// Out of range
+			return null;
+		}
+	}
+
+	private static UUID parse_canonical_uuid(final String s) {
+		if (s.length() != 36) {
+			return null;
+		}
+
+		for (int i = 0; i < 36; ++i) {
+			final var c = s.charAt(i);
+			if (i == 8 || i == 13 || i == 18 || i == 23) {
+				if (c != '-') {
+					return null;
+				}
+			} else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+				// UUID.toString() only produces lowercase hex digits
+				return null;
+			}
+		}
+
+		return UUID.fromString(s);
+	}
+
+	private static byte[] parse_canonical_base64(final String s) {
+		if (s.length() % 4 != 0) {
+			return null;
+		}
+
+		final byte[] bytes;
+		try {
+			bytes = Base64.getDecoder().decode(s);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+
+		// Only accept strings that are restored exactly
+		if (!Base64.getEncoder().encodeToString(bytes).equals(s)) {
+			return null;
+		}
+		return bytes;
+	}
+}
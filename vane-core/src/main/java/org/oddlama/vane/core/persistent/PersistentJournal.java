@@ -0,0 +1,190 @@
+package org.oddlama.vane.core.persistent;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * An append-only change log for persistent storage. Each record sets or
+ * removes a single entry of a persistent field (e.g. one portal in a map of
+ * portals), addressed by the field's storage path followed by map keys.
+ * Records belong to exactly one snapshot generation and are replayed onto
+ * that snapshot's json before any field is deserialized.
+ */
+public class PersistentJournal {
+
+	private static final Object REMOVED = new Object();
+
+	// Pending changes that have not yet been captured (path → live value or REMOVED).
+	// Repeated changes to the same entry are coalesced into the latest one.
+	private final Map<List<String>, Object> pending = new LinkedHashMap<>();
+	private long records_since_snapshot = 0;
+
+	public void put(final List<String> path, final Object value) {
+		// Re-insert to keep records in order of their latest change
+		pending.remove(path);
+		pending.put(path, value == null ? JSONObject.NULL : value);
+	}
+
+	public void remove(final List<String> path) {
+		pending.remove(path);
+		pending.put(path, REMOVED);
+	}
+
+	public boolean has_pending() {
+		return !pending.isEmpty();
+	}
+
+	public long records_since_snapshot() {
+		return records_since_snapshot;
+	}
+
+	public void clear() {
+		pending.clear();
+		records_since_snapshot = 0;
+	}
+
+	/**
+	 * Serializes all pending changes into journal lines. Must be called on the main
+	 * thread, as the values are serialized from their current live state.
+	 */
+	public List<String> capture() throws IOException {
+		final var lines = new ArrayList<String>(pending.size());
+		for (final var e : pending.entrySet()) {
+			final var record = new JSONObject();
+			record.put("path", new JSONArray(e.getKey()));
+			if (e.getValue() == REMOVED) {
+				record.put("op", "remove");
+			} else {
+				final var value = e.getValue();
+				record.put("op", "put");
+				record.put(
+					"value",
+					value == JSONObject.NULL ? JSONObject.NULL : PersistentSerializer.to_json(value.getClass(), value)
+				);
+			}
+			lines.add(record.toString());
+		}
+
+		records_since_snapshot += lines.size();
+		pending.clear();
+		return lines;
+	}
+
+	public static File file_for(final File storage_file) {
+		return new File(storage_file.getAbsolutePath() + ".journal");
+	}
+
+	/**
+	 * Truncates the journal and starts a new one for the given snapshot generation.
+	 */
+	public static void reset(final File journal_file, long generation) throws IOException {
+		final var header = new JSONObject();
+		header.put("generation", String.valueOf(generation));
+		Files.write(journal_file.toPath(), Arrays.asList(header.toString()), StandardCharsets.UTF_8);
+	}
+
+	public static void append(final File journal_file, final List<String> lines) throws IOException {
+		Files.write(
+			journal_file.toPath(),
+			lines,
+			StandardCharsets.UTF_8,
+			StandardOpenOption.CREATE,
+			StandardOpenOption.APPEND
+		);
+	}
+
+	/**
+	 * Passes all records of the journal to the given consumer in order.
+	 * Returns false if the journal does not exist, belongs to a different
+	 * snapshot generation or is damaged. It must then be reset before
+	 * further records are appended to it.
+	 */
+	public static boolean replay(final File journal_file, long generation, final Consumer<JSONObject> on_record)
+		throws IOException {
+		if (!journal_file.exists()) {
+			return false;
+		}
+
+		try (BufferedReader reader = Files.newBufferedReader(journal_file.toPath(), StandardCharsets.UTF_8)) {
+			final var header_line = reader.readLine();
+			if (header_line == null) {
+				return false;
+			}
+
+			try {
+				final var header = new JSONObject(header_line);
+				if (!String.valueOf(generation).equals(header.optString("generation"))) {
+					// Journal of an older snapshot, all of its records are already contained in it.
+					return false;
+				}
+
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.isEmpty()) {
+						continue;
+					}
+					final var record = new JSONObject(line);
+					// Validate the record before it is passed on
+					record.getJSONArray("path").getString(0);
+					record.getString("op");
+					on_record.accept(record);
+				}
+			} catch (JSONException e) {
+				// A record was only partially written. All complete records before it have been applied.
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the storage path of the field the given record belongs to.
+	 */
+	public static String field_path(final JSONObject record) {
+		return record.getJSONArray("path").getString(0);
+	}
+
+	/**
+	 * Applies the given record onto a json object containing the field it belongs to.
+	 */
+	public static void apply(final JSONObject json, final JSONObject record) {
+		final var path = record.getJSONArray("path");
+		final var remove = "remove".equals(record.getString("op"));
+
+		// Walk to the object containing the entry
+		var obj = json;
+		for (int i = 0; i < path.length() - 1; ++i) {
+			final var key = path.getString(i);
+			var next = obj.optJSONObject(key);
+			if (next == null) {
+				if (remove) {
+					return;
+				}
+				next = new JSONObject();
+				obj.put(key, next);
+			}
+			obj = next;
+		}
+
+		final var key = path.getString(path.length() - 1);
+		if (remove) {
+			obj.remove(key);
+		} else {
+			obj.put(key, record.get("value"));
+		}
+	}
+}
@@ -10,7 +10,17 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.logging.Level;
@@ -34,10 +44,14 @@ public class PersistentStorageManager {
 		}
 	}
 
+	// Amount of journal records after which the next save writes a new snapshot
+	public static final long JOURNAL_COMPACTION_THRESHOLD = 16384;
+
 	private List<PersistentField> persistent_fields = new ArrayList<>();
 	private List<Migration> migrations = new ArrayList<>();
 	Module<?> module;
 	boolean is_loaded = false;
+	private StorageFormat format = null;
 
 	public PersistentStorageManager(Module<?> module) {
 		this.module = module;
@@ -100,9 +114,44 @@ public class PersistentStorageManager {
 		migrations.add(new Migration(to, name, migrator));
 	}
 
+	public boolean is_loaded() {
+		return is_loaded;
+	}
+
+	/**
+	 * Returns the format selected by the module's binary_storage config option.
+	 * It is fixed on first use, so a changed option only takes effect on the next start.
+	 */
+	public StorageFormat format() {
+		if (format == null) {
+			format = module.config_binary_storage ? StorageFormat.BINARY : StorageFormat.JSON;
+		}
+		return format;
+	}
+
 	@SuppressWarnings("unchecked")
 	public boolean load(File file) {
-		if (!file.exists() && is_loaded) {
+		// If the storage only exists in another format, it is loaded from there
+		// and replaced by the selected format on the next save.
+		var source_file = file;
+		var source_format = format();
+		obsolete_file = null;
+		if (!file.exists()) {
+			for (final var other_format : StorageFormat.values()) {
+				final var other_file = other_format.storage_file(file.getParentFile());
+				if (other_format != source_format && other_file.exists()) {
+					module.log.info(
+						"Migrating persistent storage from '" + other_file.getName() + "' to '" + file.getName() + "'"
+					);
+					source_file = other_file;
+					source_format = other_format;
+					obsolete_file = other_file;
+					break;
+				}
+			}
+		}
+
+		if (!source_file.exists() && is_loaded) {
 			module.log.severe("Cannot reload persistent storage from nonexistent file '" + file.getName() + "'");
 			return false;
 		}
@@ -110,26 +159,90 @@ public class PersistentStorageManager {
 		// Reset loaded status
 		is_loaded = false;
 
-		final JSONObject json;
-		if (file.exists()) {
-			// Open file and read json
-			try {
-				json = new JSONObject(Files.readString(file.toPath(), StandardCharsets.UTF_8));
-			} catch (IOException e) {
-				module.log.severe("error while loading persistent data from '" + file.getName() + "':");
-				module.log.severe(e.getMessage());
-				return false;
+		final var version_path = module.storage_path_of("storage_version");
+		final var generation_path = module.storage_path_of("storage_journal_generation");
+		final var needed_version = module.annotation.storage_version();
+
+		final var fields_by_path = new HashMap<String, PersistentField>();
+		for (final var f : persistent_fields) {
+			fields_by_path.put(f.path(), f);
+		}
+
+		// The file is read one entry at a time. Once the version and journal generation
+		// are known (they are written first), fields that need no migration are
+		// deserialized directly from their entry, which is then discarded. All other
+		// entries are collected, so migrations can operate on them.
+		final var json = new JSONObject();
+		final var loaded_fields = new HashSet<PersistentField>();
+		final var journal_records = new HashMap<String, List<JSONObject>>();
+		Long file_version = null;
+		generation = 0;
+		journal.clear();
+		boolean journal_read = false;
+		boolean journal_valid = false;
+		try {
+			if (source_file.exists()) {
+				try (final var reader = source_format.open(source_file)) {
+					String key;
+					while ((key = reader.next_key()) != null) {
+						final var value = reader.next_value();
+						if (key.equals(version_path)) {
+							file_version = Long.valueOf(String.valueOf(value));
+							continue;
+						} else if (key.equals(generation_path)) {
+							generation = Long.parseLong(String.valueOf(value));
+							continue;
+						}
+
+						// Read all changes recorded since the snapshot was written as soon as the header is complete.
+						if (!journal_read && file_version != null && generation != 0) {
+							journal_valid = read_journal(source_file, generation, journal_records);
+							journal_read = true;
+						}
+
+						final var field = journal_read && !needs_migration(file_version)
+							? fields_by_path.get(key)
+							: null;
+						if (field == null) {
+							json.put(key, value);
+							continue;
+						}
+
+						final var field_json = new JSONObject();
+						field_json.put(key, value);
+						final var records = journal_records.remove(key);
+						if (records != null) {
+							records.forEach(r -> PersistentJournal.apply(field_json, r));
+						}
+						field.load(field_json);
+						loaded_fields.add(field);
+					}
+				}
+
+				if (!journal_read && generation != 0) {
+					journal_valid = read_journal(source_file, generation, journal_records);
+				}
 			}
-		} else {
-			json = new JSONObject();
+		} catch (IOException e) {
+			module.log.log(Level.SEVERE, "error while loading persistent data from '" + source_file.getName() + "'", e);
+			return false;
+		}
+
+		// Replay the remaining changes onto the collected entries. This happens
+		// before migrations, as the journal was written by the same version as the snapshot.
+		for (final var records : journal_records.values()) {
+			records.forEach(r -> PersistentJournal.apply(json, r));
+		}
+
+		// Without a valid journal for this snapshot, the next save must write a new snapshot.
+		synchronized (write_lock) {
+			written_generation = journal_valid ? generation : 0;
 		}
+		needs_full_save = !journal_valid || obsolete_file != null;
 
 		// Check version and migrate if necessary
-		final var version_path = module.storage_path_of("storage_version");
-		final var version_obj = Long.valueOf(json.optString(version_path, "0"));
-		final var version = version_obj == null ? 0 : (long) version_obj;
-		final var needed_version = module.annotation.storage_version();
-		if (version != needed_version && migrations.size() > 0) {
+		final var version = file_version == null ? 0 : (long) file_version;
+		if (needs_migration(version)) {
 			module.log.info("Persistent storage is out of date.");
 			module.log.info("§dMigrating storage from version §b" + version + " → " + needed_version + "§d:");
 
@@ -143,6 +256,9 @@ public class PersistentStorageManager {
 					module.log.info("  → §b" + m.to + "§r : Applying migration '§a" + m.name + "§r'");
 					m.migrator.accept(json);
 				});
+
+			// The journal belongs to the old version, so a new snapshot is required.
+			needs_full_save = true;
 		}
 
 		// Overwrite new version
@@ -150,6 +266,10 @@ public class PersistentStorageManager {
 
 		try {
 			for (final var f : persistent_fields) {
+				if (loaded_fields.contains(f)) {
+					continue;
+				}
+
 				// If we have just initialized a new json object, we only load values that
 				// have defined keys (e.g. from initialization migrations)
 				if (version == 0 && !json.has(f.path())) {
@@ -167,12 +287,38 @@ public class PersistentStorageManager {
 		return true;
 	}
 
-	public void save(File file) {
-		if (!is_loaded) {
-			// Don't save if never loaded or a previous load was faulty.
-			return;
-		}
+	private boolean needs_migration(long version) {
+		return version != module.annotation.storage_version() && migrations.size() > 0;
+	}
+
+	private static boolean read_journal(
+		final File storage_file,
+		long generation,
+		final Map<String, List<JSONObject>> records
+	) throws IOException {
+		return PersistentJournal.replay(
+			PersistentJournal.file_for(storage_file),
+			generation,
+			record -> records.computeIfAbsent(PersistentJournal.field_path(record), k -> new ArrayList<>()).add(record)
+		);
+	}
+
+	// Serializes all persistent fields into a new json object. This must be called
+	// on the main thread, but the result is detached from all live objects and can
+	// be written from any thread afterwards.
+	private Snapshot snapshot() {
+		final var json = serialize();
+
+		// Start a new journal generation. The snapshot contains all pending changes.
+		generation = new_generation();
+		json.put(module.storage_path_of("storage_journal_generation"), String.valueOf(generation));
+		journal.clear();
+		needs_full_save = false;
 
+		return new Snapshot(next_snapshot_sequence++, generation, json);
+	}
+
+	private JSONObject serialize() {
 		// Create json with whole content
 		final var json = new JSONObject();
 
@@ -189,12 +335,286 @@ public class PersistentStorageManager {
 			}
 		}
 
+		return json;
+	}
+
+	/**
+	 * Writes the current content of the persistent storage as human readable
+	 * json to the given file, regardless of the selected storage format.
+	 * Intended for debugging, the file is never loaded.
+	 */
+	public void export_json(File file) throws IOException {
+		Files.write(file.toPath(), serialize().toString(2).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static long new_generation() {
+		long generation;
+		do {
+			generation = ThreadLocalRandom.current().nextLong();
+		} while (generation == 0);
+		return generation;
+	}
+
+	private static class Snapshot {
+
+		private final long sequence;
+		private final long generation;
+		private final JSONObject json;
+
+		private Snapshot(long sequence, long generation, JSONObject json) {
+			this.sequence = sequence;
+			this.generation = generation;
+			this.json = json;
+		}
+	}
+
+	private static class JournalBatch {
+
+		private final long generation;
+		private final List<String> lines;
+
+		private JournalBatch(long generation, List<String> lines) {
+			this.generation = generation;
+			this.lines = lines;
+		}
+	}
+
+	// Journal generation of the latest captured snapshot (main thread)
+	private long generation = 0;
+	private final PersistentJournal journal = new PersistentJournal();
+	private volatile boolean needs_full_save = true;
+
+	// Snapshots are numbered, so an older snapshot can never overwrite a newer one.
+	private long next_snapshot_sequence = 0;
+	private long last_written_sequence = -1;
+	// Journal generation of the files on disk, 0 if the journal cannot be appended to (write_lock)
+	private long written_generation = 0;
+	private final Object write_lock = new Object();
+	// The latest snapshot that still has to be written. Newer snapshots replace
+	// older ones that have not been picked up yet, which coalesces repeated saves.
+	private final AtomicReference<Snapshot> pending_snapshot = new AtomicReference<>();
+	private final ConcurrentLinkedQueue<JournalBatch> pending_batches = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean drain_scheduled = new AtomicBoolean(false);
+	// Storage file of another format that was migrated and is deleted after the first save
+	private volatile File obsolete_file = null;
+	private ThreadPoolExecutor save_executor = null;
+
+	private ThreadPoolExecutor save_executor() {
+		if (save_executor == null) {
+			// A single worker with a bounded queue. At most one write task is queued
+			// at any time, as new work is picked up by the already queued task.
+			save_executor =
+				new ThreadPoolExecutor(
+					1,
+					1,
+					0l,
+					TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(1),
+					r -> {
+						final var thread = new Thread(r, "vane-" + module.get_name() + "-storage");
+						thread.setDaemon(true);
+						return thread;
+					},
+					new ThreadPoolExecutor.CallerRunsPolicy()
+				);
+		}
+		return save_executor;
+	}
+
+	private void schedule_drain(File file) {
+		if (drain_scheduled.compareAndSet(false, true)) {
+			save_executor()
+				.execute(() -> {
+					drain_scheduled.set(false);
+					drain(file);
+				});
+		}
+	}
+
+	/**
+	 * Records that the map entry of the given persistent field (identified by
+	 * its storage path) at the given keys has been set to the given value.
+	 * The value is serialized when the journal is flushed, so it may still change until then.
+	 */
+	public void journal_put(final String path, final Object value, final Object... keys) {
+		final var journal_path = journal_path(path, keys);
+		if (journal_path != null) {
+			journal.put(journal_path, value);
+		}
+	}
+
+	/**
+	 * Records that the map entry of the given persistent field (identified by
+	 * its storage path) at the given keys has been removed.
+	 */
+	public void journal_remove(final String path, final Object... keys) {
+		final var journal_path = journal_path(path, keys);
+		if (journal_path != null) {
+			journal.remove(journal_path);
+		}
+	}
+
+	private List<String> journal_path(final String path, final Object... keys) {
+		final var journal_path = new ArrayList<String>(keys.length + 1);
+		journal_path.add(path);
+		try {
+			for (final var key : keys) {
+				journal_path.add((String) PersistentSerializer.to_json(key.getClass(), key));
+			}
+		} catch (IOException e) {
+			// Cannot be journaled, so the change will be contained in the next snapshot instead.
+			module.log.log(Level.SEVERE, "error while serializing persistent data journal key!", e);
+			needs_full_save = true;
+			return null;
+		}
+		return journal_path;
+	}
+
+	/**
+	 * Returns true if the next save should write a full snapshot, either because
+	 * the journal is not usable or because it grew large enough to be compacted.
+	 */
+	public boolean needs_full_save() {
+		return needs_full_save || journal.records_since_snapshot() >= JOURNAL_COMPACTION_THRESHOLD;
+	}
+
+	/**
+	 * Appends all pending journal records in the background. The records are
+	 * captured on the calling (main) thread. Falls back to a full snapshot if necessary.
+	 */
+	public void flush_journal_async(File file) {
+		if (!is_loaded || !journal.has_pending()) {
+			return;
+		}
+
+		if (needs_full_save()) {
+			save_async(file);
+			return;
+		}
+
+		final List<String> lines;
+		try {
+			lines = journal.capture();
+		} catch (IOException e) {
+			module.log.log(Level.SEVERE, "error while serializing persistent data journal!", e);
+			save_async(file);
+			return;
+		}
+
+		pending_batches.add(new JournalBatch(generation, lines));
+		schedule_drain(file);
+	}
+
+	/**
+	 * Saves the persistent storage in the background. The content is
+	 * captured on the calling (main) thread, while stringification
+	 * and file i/o happen on a worker thread.
+	 */
+	public void save_async(File file) {
+		if (!is_loaded) {
+			// Don't save if never loaded or a previous load was faulty.
+			return;
+		}
+
+		pending_snapshot.set(snapshot());
+		schedule_drain(file);
+	}
+
+	/**
+	 * Saves the persistent storage synchronously and waits
+	 * for any pending background save to finish.
+	 */
+	public void save(File file) {
+		if (!is_loaded) {
+			// Don't save if never loaded or a previous load was faulty.
+			return;
+		}
+
+		// Supersedes any snapshot or journal record that was not written yet.
+		pending_snapshot.set(snapshot());
+		drain(file);
+	}
+
+	/**
+	 * Stops the background writer. Must be called after the final synchronous save.
+	 */
+	public void shutdown() {
+		if (save_executor == null) {
+			return;
+		}
+
+		save_executor.shutdown();
+		try {
+			if (!save_executor.awaitTermination(10, TimeUnit.SECONDS)) {
+				module.log.severe("Timed out while waiting for persistent storage to be written!");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		save_executor = null;
+	}
+
+	private void drain(File file) {
+		synchronized (write_lock) {
+			while (true) {
+				final var snapshot = pending_snapshot.getAndSet(null);
+				if (snapshot != null) {
+					write_snapshot(file, snapshot);
+				}
+
+				final var batch = pending_batches.peek();
+				if (batch == null) {
+					break;
+				}
+
+				if (batch.generation != written_generation && pending_snapshot.get() != null) {
+					// The snapshot this batch belongs to must be written first.
+					continue;
+				}
+
+				pending_batches.poll();
+				if (batch.generation != written_generation) {
+					// The batch is either contained in a newer snapshot,
+					// or its snapshot could not be written (which forces a new one).
+					continue;
+				}
+
+				try {
+					PersistentJournal.append(PersistentJournal.file_for(file), batch.lines);
+				} catch (IOException e) {
+					module.log.log(Level.SEVERE, "error while appending to persistent data journal!", e);
+					written_generation = 0;
+					needs_full_save = true;
+				}
+			}
+		}
+	}
+
+	private void write_snapshot(File file, Snapshot snapshot) {
+		if (snapshot.sequence <= last_written_sequence) {
+			// A newer snapshot has already been written.
+			return;
+		}
+
+		// Until the new snapshot and its journal are both on disk, nothing may be appended.
+		written_generation = 0;
+
 		// Save to tmp file, then move atomically to prevent corruption.
 		final var tmp_file = new File(file.getAbsolutePath() + ".tmp");
 		try {
-			Files.write(tmp_file.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+			// The header is written first, so it is known before any field is read on load.
+			format()
+				.write(
+					snapshot.json,
+					List.of(
+						module.storage_path_of("storage_version"),
+						module.storage_path_of("storage_journal_generation")
+					),
+					tmp_file
+				);
 		} catch (IOException e) {
 			module.log.log(Level.SEVERE, "error while saving persistent data to temporary file!", e);
+			needs_full_save = true;
 			return;
 		}
 
@@ -214,7 +634,34 @@ public class PersistentStorageManager {
 				"' with temporary file (very recent changes might be lost)!",
 				e
 			);
+			needs_full_save = true;
 			return;
 		}
+
+		last_written_sequence = snapshot.sequence;
+
+		// Start a fresh journal for the new snapshot. A stale journal left
+		// behind by a crash is ignored on load, as its generation won't match.
+		try {
+			PersistentJournal.reset(PersistentJournal.file_for(file), snapshot.generation);
+		} catch (IOException e) {
+			module.log.log(Level.SEVERE, "error while resetting persistent data journal!", e);
+			needs_full_save = true;
+			return;
+		}
+
+		written_generation = snapshot.generation;
+
+		// The migrated storage is now contained in the selected format
+		final var obsolete = obsolete_file;
+		if (obsolete != null) {
+			obsolete_file = null;
+			try {
+				Files.deleteIfExists(obsolete.toPath());
+				Files.deleteIfExists(PersistentJournal.file_for(obsolete).toPath());
+			} catch (IOException e) {
+				module.log.log(Level.WARNING, "could not delete migrated persistent storage '" + obsolete + "'", e);
+			}
+		}
 	}
 }
@@ -0,0 +1,208 @@
+package org.oddlama.vane.core.persistent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * The on-disk format of a module's persistent storage. Both formats store
+ * the same json tree, so a module can switch between them at any time.
+ */
+public enum StorageFormat {
+	JSON(".json") {
+		@Override
+		public StorageReader open(final File file) throws IOException {
+			final var reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+			try {
+				return new JsonStorageReader(reader);
+			} catch (IOException e) {
+				reader.close();
+				throw e;
+			}
+		}
+
+		@Override
+		public void write(final JSONObject json, final List<String> first_keys, final File file) throws IOException {
+			try (final var writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+				writer.write('{');
+				boolean first = true;
+				for (final var key : first_keys) {
+					if (json.has(key)) {
+						write_entry(writer, key, json.get(key), first);
+						first = false;
+					}
+				}
+				for (final var key : json.keySet()) {
+					if (!first_keys.contains(key)) {
+						write_entry(writer, key, json.get(key), first);
+						first = false;
+					}
+				}
+				writer.write('}');
+			} catch (JSONException e) {
+				throw new IOException(e);
+			}
+		}
+
+		private void write_entry(final Writer writer, final String key, final Object value, boolean first)
+			throws IOException {
+			if (!first) {
+				writer.write(',');
+			}
+			JSONObject.quote(key, writer);
+			writer.write(':');
+			// Write nested values directly instead of building their string representation
+			if (value instanceof JSONObject) {
+				((JSONObject) value).write(writer);
+			} else if (value instanceof JSONArray) {
+				((JSONArray) value).write(writer);
+			} else {
+				writer.write(JSONObject.valueToString(value));
+			}
+		}
+	},
+	BINARY(".bin") {
+		@Override
+		public StorageReader open(final File file) throws IOException {
+			final var in = new BufferedInputStream(Files.newInputStream(file.toPath()), 1 << 16);
+			try {
+				final var reader = BinaryJson.open(in);
+				return new StorageReader() {
+					@Override
+					public String next_key() throws IOException {
+						return reader.next_key();
+					}
+
+					@Override
+					public Object next_value() throws IOException {
+						return reader.next_value();
+					}
+
+					@Override
+					public void close() throws IOException {
+						in.close();
+					}
+				};
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+
+		@Override
+		public void write(final JSONObject json, final List<String> first_keys, final File file) throws IOException {
+			try (final var out = new BufferedOutputStream(Files.newOutputStream(file.toPath()), 1 << 16)) {
+				BinaryJson.write(json, first_keys, out);
+			}
+		}
+	};
+
+	private final String extension;
+
+	private StorageFormat(final String extension) {
+		this.extension = extension;
+	}
+
+	public File storage_file(final File data_folder) {
+		return new File(data_folder, "storage" + extension);
+	}
+
+	/**
+	 * Opens the given file for reading its top-level entries one at a time.
+	 */
+	public abstract StorageReader open(final File file) throws IOException;
+
+	/**
+	 * Writes the given json to the given file. The given keys are written first
+	 * (if present), so they can be read before any other entry.
+	 */
+	public abstract void write(final JSONObject json, final List<String> first_keys, final File file)
+		throws IOException;
+
+	/**
+	 * Reads the top-level object entry by entry using org.json's tokenizer, so
+	 * the file content is never held in memory as a whole.
+	 */
+	private static class JsonStorageReader implements StorageReader {
+
+		private final Reader reader;
+		private final JSONTokener tokener;
+		private boolean done = false;
+		private boolean first = true;
+
+		private JsonStorageReader(final Reader reader) throws IOException {
+			this.reader = reader;
+			this.tokener = new JSONTokener(reader);
+			try {
+				if (tokener.nextClean() != '{') {
+					throw new IOException("Storage file does not contain an object");
+				}
+			} catch (JSONException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		public String next_key() throws IOException {
+			if (done) {
+				return null;
+			}
+
+			try {
+				var c = tokener.nextClean();
+				if (!first) {
+					// Separator after the previous entry
+					if (c == '}') {
+						done = true;
+						return null;
+					}
+					if (c != ',') {
+						throw new IOException("Expected ',' or '}' in storage file " + tokener);
+					}
+					c = tokener.nextClean();
+				}
+				first = false;
+
+				if (c == '}') {
+					done = true;
+					return null;
+				}
+				if (c != '"') {
+					throw new IOException("Expected a key in storage file " + tokener);
+				}
+
+				final var key = tokener.nextString('"');
+				if (tokener.nextClean() != ':') {
+					throw new IOException("Expected ':' after a key in storage file " + tokener);
+				}
+				return key;
+			} catch (JSONException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		public Object next_value() throws IOException {
+			try {
+				return tokener.nextValue();
+			} catch (JSONException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package org.oddlama.vane.core.persistent;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the top-level entries of a storage file one at a time, so
+ * only a single field's json tree has to be in memory at once.
+ */
+public interface StorageReader extends Closeable {
+	/**
+	 * Returns the key of the next entry, or null if there are no more entries.
+	 */
+	public String next_key() throws IOException;
+
+	/**
+	 * Returns the value of the entry whose key was just returned by {@link #next_key()}.
+	 */
+	public Object next_value() throws IOException;
+}
@@ -0,0 +1,14 @@
+package org.oddlama.vane.core.scheduler;
+
+/**
+ * A job that can be interrupted between slices and resumed in a later tick.
+ * Each slice should only do a small, bounded amount of work, as the scheduler
+ * can only check its time budget between slices.
+ */
+@FunctionalInterface
+public interface SlicedJob {
+	/**
+	 * Performs the next slice of work. Returns true when the job is finished.
+	 */
+	public boolean run_slice();
+}
@@ -0,0 +1,307 @@
+package org.oddlama.vane.core.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import org.bukkit.scheduler.BukkitTask;
+import org.oddlama.vane.core.Core;
+import org.oddlama.vane.core.metrics.LatencyHistogram;
+import org.oddlama.vane.core.module.Module;
+
+/**
+ * Cooperative scheduler shared by all vane modules. It runs once per tick
+ * on the main thread and executes
+ *
+ * - periodic timers, whose first execution is offset so that timers with
+ *   equal periods don't all run in the same tick, and
+ * - sliced jobs, which are resumed every tick until they are finished.
+ *   Each job may use at most its own budget per tick, and all jobs together
+ *   at most the scheduler's tick budget. Jobs of higher priority run first,
+ *   jobs of equal priority take turns.
+ *
+ * The time spent in every timer and job is recorded in the metrics registry
+ * as "<module>/task/<name>", once per tick in which it was run.
+ */
+public class TickScheduler {
+
+	public static enum Priority {
+		HIGH,
+		NORMAL,
+		LOW,
+	}
+
+	// Timers are spread over the ticks of this window
+	private static final int SPREAD_WINDOW = 20;
+
+	public static class Task {
+
+		private final Module<?> owner;
+		private final LatencyHistogram histogram;
+		private boolean cancelled = false;
+
+		// Sliced jobs
+		private final SlicedJob job;
+		private final Priority priority;
+		private final long budget_nanos;
+
+		// Timers
+		private final Runnable timer;
+		private final long period_ticks;
+		private long next_tick;
+		// The timer fires in every slot of the spread window that is congruent
+		// to spread_slot modulo spread_step = gcd(period_ticks, SPREAD_WINDOW)
+		private int spread_slot = -1;
+		private int spread_step = SPREAD_WINDOW;
+
+		private Task(
+			final Module<?> owner,
+			final LatencyHistogram histogram,
+			final SlicedJob job,
+			final Priority priority,
+			long budget_nanos,
+			final Runnable timer,
+			long period_ticks
+		) {
+			this.owner = owner;
+			this.histogram = histogram;
+			this.job = job;
+			this.priority = priority;
+			this.budget_nanos = budget_nanos;
+			this.timer = timer;
+			this.period_ticks = period_ticks;
+		}
+
+		public LatencyHistogram histogram() {
+			return histogram;
+		}
+
+		public boolean is_cancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * Cancels this task. A job that is currently running finishes its current slice.
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+	}
+
+	private final Core core;
+	private final long tick_budget_nanos;
+	private BukkitTask tick_task = null;
+	private long current_tick = 0;
+
+	private final List<Task> timers = new ArrayList<>();
+	private final int[] spread_load = new int[SPREAD_WINDOW];
+	private final List<ArrayDeque<Task>> jobs = new ArrayList<>();
+
+	public TickScheduler(final Core core, double tick_budget_ms) {
+		this.core = core;
+		this.tick_budget_nanos = (long) (tick_budget_ms * 1e6);
+		for (int i = 0; i < Priority.values().length; ++i) {
+			jobs.add(new ArrayDeque<>());
+		}
+	}
+
+	private LatencyHistogram histogram_for(final Module<?> owner, final String name) {
+		return core.metrics_registry.histogram(owner.get_name() + "/task/" + name);
+	}
+
+	private void ensure_running() {
+		if (tick_task == null) {
+			tick_task = core.getServer().getScheduler().runTaskTimer(core, this::tick, 1, 1);
+		}
+	}
+
+	/**
+	 * Stops the scheduler and drops all timers and jobs.
+	 */
+	public void shutdown() {
+		if (tick_task != null) {
+			tick_task.cancel();
+			tick_task = null;
+		}
+		timers.forEach(Task::cancel);
+		timers.clear();
+		jobs.forEach(queue -> {
+			queue.forEach(Task::cancel);
+			queue.clear();
+		});
+	}
+
+	/**
+	 * Cancels all timers and jobs of the given module.
+	 */
+	public void cancel_all(final Module<?> owner) {
+		for (final var task : timers) {
+			if (task.owner == owner) {
+				task.cancel();
+			}
+		}
+		for (final var queue : jobs) {
+			for (final var task : queue) {
+				if (task.owner == owner) {
+					task.cancel();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Submits a job, which will be run slice by slice in the following ticks until it is
+	 * finished. The job will use at most budget_ms of each tick.
+	 */
+	public Task submit(
+		final Module<?> owner,
+		final String name,
+		final Priority priority,
+		double budget_ms,
+		final SlicedJob job
+	) {
+		final var task = new Task(owner, histogram_for(owner, name), job, priority, (long) (budget_ms * 1e6), null, 0);
+		jobs.get(priority.ordinal()).add(task);
+		ensure_running();
+		return task;
+	}
+
+	/**
+	 * Schedules a periodic timer. The first execution happens between delay_ticks and
+	 * delay_ticks + gcd(period_ticks, 20) - 1 ticks from now, offset so that all of its
+	 * runs land in the ticks where the fewest other timers run.
+	 */
+	public Task schedule_timer(
+		final Module<?> owner,
+		final String name,
+		final Runnable timer,
+		long delay_ticks,
+		long period_ticks
+	) {
+		if (period_ticks <= 0) {
+			throw new IllegalArgumentException("Timer period must be positive");
+		}
+
+		final var task = new Task(owner, histogram_for(owner, name), null, null, 0, timer, period_ticks);
+		// Later runs of the timer land in all slots of its residue class modulo the step,
+		// so the class with the least load is chosen, and the load is counted in all its slots.
+		final var first_tick = current_tick + Math.max(1, delay_ticks);
+		final var step = gcd(period_ticks, SPREAD_WINDOW);
+		var best_offset = 0;
+		var best_load = Long.MAX_VALUE;
+		for (int offset = 0; offset < step; ++offset) {
+			final var load = class_load(spread_slot(first_tick + offset), step);
+			if (load < best_load) {
+				best_offset = offset;
+				best_load = load;
+			}
+		}
+
+		task.next_tick = first_tick + best_offset;
+		task.spread_step = step;
+		task.spread_slot = spread_slot(task.next_tick) % step;
+		update_class_load(task.spread_slot, step, 1);
+		timers.add(task);
+		ensure_running();
+		return task;
+	}
+
+	private static int gcd(long a, int b) {
+		var x = (int) (a % b);
+		var y = b;
+		while (x != 0) {
+			final var t = y % x;
+			y = x;
+			x = t;
+		}
+		return y;
+	}
+
+	private long class_load(int slot, int step) {
+		long load = 0;
+		for (int i = slot % step; i < SPREAD_WINDOW; i += step) {
+			load += spread_load[i];
+		}
+		return load;
+	}
+
+	private void update_class_load(int slot, int step, int delta) {
+		for (int i = slot % step; i < SPREAD_WINDOW; i += step) {
+			spread_load[i] += delta;
+		}
+	}
+
+	private static int spread_slot(long tick) {
+		return (int) (tick % SPREAD_WINDOW);
+	}
+
+	private void log_failure(final Task task, final RuntimeException e) {
+		core.log.log(Level.SEVERE, "Scheduled task '" + task.histogram.name() + "' failed and was cancelled", e);
+		task.cancel();
+	}
+
+	private void run_timers() {
+		for (int i = 0; i < timers.size(); ++i) {
+			final var task = timers.get(i);
+			if (!task.cancelled && task.next_tick <= current_tick) {
+				task.next_tick += task.period_ticks;
+				final var start = System.nanoTime();
+				try {
+					task.timer.run();
+				} catch (RuntimeException e) {
+					log_failure(task, e);
+				}
+				task.histogram.record(System.nanoTime() - start);
+			}
+		}
+
+		// Timers may have been cancelled by themselves or by other timers
+		timers.removeIf(task -> {
+			if (task.cancelled) {
+				update_class_load(task.spread_slot, task.spread_step, -1);
+				return true;
+			}
+			return false;
+		});
+	}
+
+	private void run_jobs(long deadline) {
+		for (final var queue : jobs) {
+			// Every job in the queue gets at most one turn per tick
+			for (int n = queue.size(); n > 0; --n) {
+				if (System.nanoTime() >= deadline) {
+					return;
+				}
+
+				final var task = queue.poll();
+				if (task.cancelled) {
+					continue;
+				}
+
+				final var start = System.nanoTime();
+				final var job_deadline = Math.min(deadline, start + task.budget_nanos);
+				boolean finished = false;
+				try {
+					do {
+						finished = task.job.run_slice();
+					} while (!finished && !task.cancelled && System.nanoTime() < job_deadline);
+				} catch (RuntimeException e) {
+					log_failure(task, e);
+				}
+				task.histogram.record(System.nanoTime() - start);
+
+				if (!finished && !task.cancelled) {
+					queue.add(task);
+				}
+			}
+		}
+	}
+
+	private void tick() {
+		++current_tick;
+		final var tick_start = System.nanoTime();
+		// Timers always run, as skipping them would only move their cost to a later tick
+		run_timers();
+		run_jobs(tick_start + tick_budget_nanos);
+	}
+}
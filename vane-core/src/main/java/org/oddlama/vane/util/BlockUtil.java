@@ -3,6 +3,8 @@ package org.oddlama.vane.util;
 import static org.oddlama.vane.util.MaterialUtil.is_replaceable_grass;
 import static org.oddlama.vane.util.MaterialUtil.is_tillable;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -92,6 +94,23 @@ public class BlockUtil {
 		return chunk.getBlock(x, y, z);
 	}
 
+	// Groups the indices of the given blocks by the key of the chunk they are in.
+	// The chunk key is derived from block coordinates, so this never loads chunks.
+	public static Long2ObjectOpenHashMap<IntArrayList> group_by_chunk(final List<Block> blocks) {
+		final var groups = new Long2ObjectOpenHashMap<IntArrayList>();
+		for (int i = 0; i < blocks.size(); ++i) {
+			final var block = blocks.get(i);
+			final var chunk_key = Chunk.getChunkKey(block.getX() >> 4, block.getZ() >> 4);
+			var indices = groups.get(chunk_key);
+			if (indices == null) {
+				indices = new IntArrayList();
+				groups.put(chunk_key, indices);
+			}
+			indices.add(i);
+		}
+		return groups;
+	}
+
 	public static Block next_tillable_block(final Block root_block, int radius, boolean careless) {
 		for (final var relative_pos : NEAREST_RELATIVE_BLOCKS_FOR_RADIUS.get(radius)) {
 			final var block = relative(root_block, relative_pos);
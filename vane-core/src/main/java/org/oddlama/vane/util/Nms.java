@@ -2,10 +2,13 @@ package org.oddlama.vane.util;
 
 import com.mojang.datafixers.DataFixUtils;
 import com.mojang.datafixers.types.Type;
+import java.lang.reflect.Field;
 import java.util.Map;
+import java.util.logging.Level;
 import net.minecraft.SharedConstants;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Registry;
+import net.minecraft.nbt.Tag;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.dedicated.DedicatedServer;
 import net.minecraft.server.level.ServerLevel;
@@ -33,6 +36,28 @@ import org.jetbrains.annotations.NotNull;
 
 public class Nms {
 
+	// Marks items without custom model data, see {@link #custom_model_data(org.bukkit.inventory.ItemStack)}
+	public static final int NO_CUSTOM_MODEL_DATA = Integer.MIN_VALUE;
+
+	private static final Field craft_item_stack_handle;
+
+	static {
+		Field handle = null;
+		try {
+			handle = CraftItemStack.class.getDeclaredField("handle");
+			handle.setAccessible(true);
+		} catch (NoSuchFieldException e) {
+			Bukkit
+				.getLogger()
+				.log(
+					Level.WARNING,
+					"[vane] Could not access CraftItemStack.handle, item data will be read through ItemMeta instead",
+					e
+				);
+		}
+		craft_item_stack_handle = handle;
+	}
+
 	public static ServerPlayer get_player(Player player) {
 		return ((CraftPlayer) player).getHandle();
 	}
@@ -95,15 +120,49 @@ public class Nms {
 			return CraftItemStack.asNMSCopy(item_stack);
 		}
 
+		if (craft_item_stack_handle == null) {
+			return null;
+		}
+
 		try {
-			final var handle = CraftItemStack.class.getDeclaredField("handle");
-			handle.setAccessible(true);
-			return (ItemStack) handle.get(item_stack);
-		} catch (NoSuchFieldException | IllegalAccessException e) {
+			return (ItemStack) craft_item_stack_handle.get(item_stack);
+		} catch (IllegalAccessException e) {
 			return null;
 		}
 	}
 
+	private static int meta_custom_model_data(org.bukkit.inventory.ItemStack item_stack) {
+		if (!item_stack.hasItemMeta()) {
+			return NO_CUSTOM_MODEL_DATA;
+		}
+		final var meta = item_stack.getItemMeta();
+		return meta.hasCustomModelData() ? meta.getCustomModelData() : NO_CUSTOM_MODEL_DATA;
+	}
+
+	/**
+	 * Returns the custom model data of the given item, or {@link #NO_CUSTOM_MODEL_DATA}
+	 * if it has none. For server-side item stacks this reads the tag of the underlying
+	 * item directly instead of building a copy of its ItemMeta.
+	 */
+	public static int custom_model_data(org.bukkit.inventory.ItemStack item_stack) {
+		// Plain bukkit item stacks hold their meta anyway. Server-side item stacks
+		// also have to go through the meta if the handle field is inaccessible.
+		if (!(item_stack instanceof CraftItemStack) || craft_item_stack_handle == null) {
+			return meta_custom_model_data(item_stack);
+		}
+
+		final var handle = item_handle(item_stack);
+		if (handle == null) {
+			return meta_custom_model_data(item_stack);
+		}
+
+		final var tag = handle.getTag();
+		if (tag == null || !tag.contains("CustomModelData", Tag.TAG_INT)) {
+			return NO_CUSTOM_MODEL_DATA;
+		}
+		return tag.getInt("CustomModelData");
+	}
+
 	public static ServerPlayer player_handle(org.bukkit.entity.Player player) {
 		if (!(player instanceof CraftPlayer)) {
 			return null;
@@ -7,7 +7,9 @@ import java.io.Reader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -48,6 +50,18 @@ public class Util {
 		return arr;
 	}
 
+	// Removes all elements from the list whose index is set in the given bitset.
+	public static void remove_marked(final List<?> list, final BitSet marked) {
+		if (marked.isEmpty()) {
+			return;
+		}
+
+		// ArrayList.removeIf tests all elements in order and compacts the list once,
+		// instead of shifting the remaining elements on every single removal.
+		final var index = new int[] { 0 };
+		list.removeIf(e -> marked.get(index[0]++));
+	}
+
 	private static Map<Character, Long> time_multiplier;
 
 	static {
@@ -13,6 +13,8 @@ import org.bukkit.Keyed;
 import org.bukkit.NamespacedKey;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.enchantments.EnchantmentTarget;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.Recipe;
 import org.jetbrains.annotations.NotNull;
@@ -29,9 +31,11 @@ public class CustomEnchantment<T extends Module<T>> extends Listener<T> {
 
 	// Track instances
 	private static final Map<Class<?>, CustomEnchantment<?>> instances = new HashMap<>();
+	private static EquipmentCache equipment_cache;
 
 	private VaneEnchantment annotation = getClass().getAnnotation(VaneEnchantment.class);
 	private String name;
+	private int index;
 	private NamespacedKey key;
 	private NativeEnchantmentWrapper native_wrapper;
 	private BukkitEnchantmentWrapper bukkit_wrapper;
@@ -59,6 +63,7 @@ public class CustomEnchantment<T extends Module<T>> extends Listener<T> {
 		if (instances.get(getClass()) != null) {
 			throw new RuntimeException("Cannot create two instances of a custom enchantment!");
 		}
+		index = instances.size();
 		instances.put(getClass(), this);
 
 		// Register and create wrappers
@@ -84,6 +89,17 @@ public class CustomEnchantment<T extends Module<T>> extends Listener<T> {
 		instances.values().forEach(CustomEnchantment::register_superseding);
 	}
 
+	/**
+	 * Returns the number of custom enchantments.
+	 */
+	static int count() {
+		return instances.size();
+	}
+
+	static void set_equipment_cache(final EquipmentCache cache) {
+		equipment_cache = cache;
+	}
+
 	/**
 	 * Returns the bukkit wrapper for the given custom enchantment.
 	 */
@@ -127,6 +143,22 @@ public class CustomEnchantment<T extends Module<T>> extends Listener<T> {
 		return name;
 	}
 
+	/**
+	 * Only for internal use. A dense index in [0, count()), assigned in order of creation.
+	 */
+	final int index() {
+		return index;
+	}
+
+	/**
+	 * Returns the level of this enchantment on the armor piece the given player
+	 * wears in the given slot. Armor levels are cached and only refreshed when
+	 * the armor changes, so this is cheap enough to call on every movement.
+	 */
+	public final int equipped_level(final Player player, final EquipmentSlot slot) {
+		return equipment_cache.level(player, slot, this);
+	}
+
 	/**
 	 * Returns the display format for the display name.
 	 * By default the color is dependent on the rarity.
@@ -34,6 +34,8 @@ public class Enchantments extends Module<Enchantments> {
 			getServer().shutdown();
 		}
 
+		new EquipmentCache(this);
+
 		new org.oddlama.vane.enchantments.items.AncientTome(this);
 		new org.oddlama.vane.enchantments.items.AncientTomeOfKnowledge(this);
 		new org.oddlama.vane.enchantments.items.AncientTomeOfTheGods(this);
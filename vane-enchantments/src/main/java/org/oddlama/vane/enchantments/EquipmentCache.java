@@ -0,0 +1,135 @@
+package org.oddlama.vane.enchantments;
+
+import com.destroystokyo.paper.event.player.PlayerArmorChangeEvent;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.inventory.ItemStack;
+import org.oddlama.vane.core.Listener;
+import org.oddlama.vane.core.module.Context;
+
+/**
+ * Caches the custom enchantment levels of each player's armor. Reading
+ * a level from an equipped item copies the item and parses its enchantments,
+ * which is too expensive for events that fire every tick. Instead, each player
+ * gets a flat array of levels (slot × enchantment index), which is created
+ * lazily and updated whenever the server reports an armor change.
+ */
+public class EquipmentCache extends Listener<Enchantments> {
+
+	private static final int SLOT_COUNT = 4;
+
+	private final Map<UUID, int[]> levels = new HashMap<>();
+
+	public EquipmentCache(Context<Enchantments> context) {
+		super(context);
+		CustomEnchantment.set_equipment_cache(this);
+	}
+
+	@Override
+	protected void on_disable() {
+		levels.clear();
+		super.on_disable();
+	}
+
+	private static int slot_index(final EquipmentSlot slot) {
+		switch (slot) {
+			case HEAD:
+				return 0;
+			case CHEST:
+				return 1;
+			case LEGS:
+				return 2;
+			case FEET:
+				return 3;
+			default:
+				return -1;
+		}
+	}
+
+	private static int slot_index(final PlayerArmorChangeEvent.SlotType slot) {
+		switch (slot) {
+			case HEAD:
+				return 0;
+			case CHEST:
+				return 1;
+			case LEGS:
+				return 2;
+			case FEET:
+				return 3;
+			default:
+				return -1;
+		}
+	}
+
+	private static void store_levels(final int[] levels, int slot_index, final ItemStack item) {
+		final var count = CustomEnchantment.count();
+		final var offset = slot_index * count;
+		for (int i = 0; i < count; ++i) {
+			levels[offset + i] = 0;
+		}
+
+		if (item == null || !item.hasItemMeta()) {
+			return;
+		}
+
+		for (final var entry : item.getEnchantments().entrySet()) {
+			if (entry.getKey() instanceof BukkitEnchantmentWrapper) {
+				final var custom = ((BukkitEnchantmentWrapper) entry.getKey()).custom_enchantment();
+				levels[offset + custom.index()] = entry.getValue();
+			}
+		}
+	}
+
+	private int[] snapshot(final Player player) {
+		final var equipment = player.getEquipment();
+		final var snapshot = new int[SLOT_COUNT * CustomEnchantment.count()];
+		store_levels(snapshot, 0, equipment.getHelmet());
+		store_levels(snapshot, 1, equipment.getChestplate());
+		store_levels(snapshot, 2, equipment.getLeggings());
+		store_levels(snapshot, 3, equipment.getBoots());
+		return snapshot;
+	}
+
+	/**
+	 * Returns the level of the given custom enchantment on the item
+	 * the player wears in the given slot. Slots other than armor slots
+	 * are not cached and are read from the item directly.
+	 */
+	public int level(final Player player, final EquipmentSlot slot, final CustomEnchantment<?> enchantment) {
+		final var slot_index = slot_index(slot);
+		if (slot_index == -1) {
+			final var item = player.getEquipment().getItem(slot);
+			return item == null ? 0 : item.getEnchantmentLevel(enchantment.bukkit());
+		}
+
+		var player_levels = levels.get(player.getUniqueId());
+		if (player_levels == null) {
+			player_levels = snapshot(player);
+			levels.put(player.getUniqueId(), player_levels);
+		}
+		return player_levels[slot_index * CustomEnchantment.count() + enchantment.index()];
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void on_player_armor_change(final PlayerArmorChangeEvent event) {
+		// Without a snapshot, the next lookup will create it anyway
+		final var player_levels = levels.get(event.getPlayer().getUniqueId());
+		final var slot_index = slot_index(event.getSlotType());
+		if (player_levels == null || slot_index == -1) {
+			return;
+		}
+
+		store_levels(player_levels, slot_index, event.getNewItem());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void on_player_quit(final PlayerQuitEvent event) {
+		levels.remove(event.getPlayer().getUniqueId());
+	}
+}
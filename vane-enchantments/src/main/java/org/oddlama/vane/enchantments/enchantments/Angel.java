@@ -3,9 +3,8 @@ package org.oddlama.vane.enchantments.enchantments;
 import java.util.List;
 import org.bukkit.Material;
 import org.bukkit.Particle;
-import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
-import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.ShapedRecipe;
 import org.bukkit.inventory.meta.EnchantmentStorageMeta;
@@ -16,6 +15,7 @@ import org.oddlama.vane.annotation.config.ConfigDoubleList;
 import org.oddlama.vane.annotation.enchantment.Rarity;
 import org.oddlama.vane.annotation.enchantment.VaneEnchantment;
 import org.oddlama.vane.core.LootTable.LootTableEntry;
+import org.oddlama.vane.core.PlayerMovementDispatcher;
 import org.oddlama.vane.core.item.CustomItem;
 import org.oddlama.vane.core.module.Context;
 import org.oddlama.vane.enchantments.CustomEnchantment;
@@ -41,10 +41,32 @@ public class Angel extends CustomEnchantment<Enchantments> {
 	)
 	private List<Double> config_speed;
 
+	private PlayerMovementDispatcher.Subscription movement_subscription;
+
 	public Angel(Context<Enchantments> context) {
 		super(context);
 	}
 
+	@Override
+	protected void on_enable() {
+		super.on_enable();
+		// Gliding players change their position every tick, so rotations can be ignored
+		movement_subscription =
+			get_module()
+				.core.movement_dispatcher.subscribe(
+					EventPriority.MONITOR,
+					PlayerMovementDispatcher.Change.POSITION,
+					this::on_player_move
+				);
+	}
+
+	@Override
+	protected void on_disable() {
+		get_module().core.movement_dispatcher.unsubscribe(movement_subscription);
+		movement_subscription = null;
+		super.on_disable();
+	}
+
 	@Override
 	public void register_superseding() {
 		supersedes(bukkit(Wings.class));
@@ -105,17 +127,15 @@ public class Angel extends CustomEnchantment<Enchantments> {
 		return config_speed.get(0);
 	}
 
-	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-	public void on_player_move(final PlayerMoveEvent event) {
+	private void on_player_move(final PlayerMovementDispatcher.Movement movement) {
 		// Check sneaking and flying
-		final var player = event.getPlayer();
+		final var player = movement.player();
 		if (!player.isSneaking() || !player.isGliding()) {
 			return;
 		}
 
 		// Check enchantment level
-		final var chest = player.getEquipment().getChestplate();
-		final var level = chest.getEnchantmentLevel(this.bukkit());
+		final var level = equipped_level(player, EquipmentSlot.CHEST);
 		if (level == 0) {
 			return;
 		}
@@ -6,6 +6,7 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.ShapedRecipe;
 import org.bukkit.inventory.meta.EnchantmentStorageMeta;
 import org.bukkit.loot.LootTables;
@@ -75,15 +76,9 @@ public class HellBent extends CustomEnchantment<Enchantments> {
 			return;
 		}
 
-		// Get helmet
+		// Check helmet enchantment
 		final var player = (Player) entity;
-		final var helmet = player.getEquipment().getHelmet();
-		if (helmet == null) {
-			return;
-		}
-
-		// Check enchantment
-		if (helmet.getEnchantmentLevel(this.bukkit()) == 0) {
+		if (equipped_level(player, EquipmentSlot.HEAD) == 0) {
 			return;
 		}
 
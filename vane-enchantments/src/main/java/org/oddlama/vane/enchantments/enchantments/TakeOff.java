@@ -11,6 +11,7 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.entity.EntityToggleGlideEvent;
+import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.ShapedRecipe;
 import org.bukkit.inventory.meta.EnchantmentStorageMeta;
@@ -108,15 +109,14 @@ public class TakeOff extends CustomEnchantment<Enchantments> {
 		}
 
 		// Check enchantment level
-		final var chest = player.getEquipment().getChestplate();
-		final var level = chest.getEnchantmentLevel(this.bukkit());
+		final var level = equipped_level(player, EquipmentSlot.CHEST);
 		if (level == 0) {
 			return;
 		}
 
 		// Apply boost
 		apply_elytra_boost(player, get_boost_strength(level));
-		damage_item(player, chest, (int) (1.0 + 2.0 * Math.random()));
+		damage_item(player, player.getEquipment().getChestplate(), (int) (1.0 + 2.0 * Math.random()));
 
 		// Spawn particles
 		final var loc = player.getLocation();
@@ -1,5 +1,8 @@
 package org.oddlama.vane.portals;
 
+import static org.oddlama.vane.util.Util.remove_marked;
+
+import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.BlockBreakEvent;
@@ -36,12 +39,8 @@ public class PortalBlockProtector extends Listener<Portals> {
 	@EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
 	public void on_entity_explode(final EntityExplodeEvent event) {
 		// Prevent explosions from removing portal blocks
-		final var it = event.blockList().iterator();
-		while (it.hasNext()) {
-			if (get_module().is_portal_block(it.next())) {
-				it.remove();
-			}
-		}
+		final var blocks = event.blockList();
+		remove_marked(blocks, get_module().portal_blocks_in(blocks));
 	}
 
 	@EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
@@ -52,8 +51,19 @@ public class PortalBlockProtector extends Listener<Portals> {
 		}
 	}
 
+	// Pistons move at most 12 blocks, so all affected blocks are within one chunk of the piston.
+	private boolean may_move_portal_blocks(final Block piston) {
+		final var cx = piston.getX() >> 4;
+		final var cz = piston.getZ() >> 4;
+		return get_module().may_contain_portal_blocks(piston.getWorld().getUID(), cx - 1, cz - 1, cx + 1, cz + 1);
+	}
+
 	@EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
 	public void on_block_piston_extend(final BlockPistonExtendEvent event) {
+		if (!may_move_portal_blocks(event.getBlock())) {
+			return;
+		}
+
 		// Prevent pistons from moving portal blocks
 		for (final var block : event.getBlocks()) {
 			if (get_module().is_portal_block(block)) {
@@ -65,6 +75,10 @@ public class PortalBlockProtector extends Listener<Portals> {
 
 	@EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
 	public void on_block_piston_retract(final BlockPistonRetractEvent event) {
+		if (!may_move_portal_blocks(event.getBlock())) {
+			return;
+		}
+
 		// Prevent pistons from moving portal blocks
 		for (final var block : event.getBlocks()) {
 			if (get_module().is_portal_block(block)) {
@@ -1,5 +1,6 @@
 package org.oddlama.vane.portals;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -9,6 +10,7 @@ import org.dynmap.markers.Marker;
 import org.dynmap.markers.MarkerAPI;
 import org.dynmap.markers.MarkerIcon;
 import org.dynmap.markers.MarkerSet;
+import org.oddlama.vane.core.scheduler.TickScheduler;
 import org.oddlama.vane.portals.portal.Portal;
 
 public class PortalDynmapLayerDelegate {
@@ -21,6 +23,7 @@ public class PortalDynmapLayerDelegate {
 
 	private MarkerSet marker_set = null;
 	private MarkerIcon marker_icon = null;
+	private TickScheduler.Task update_all_task = null;
 
 	public PortalDynmapLayerDelegate(final PortalDynmapLayer parent) {
 		this.parent = parent;
@@ -54,6 +57,10 @@ public class PortalDynmapLayerDelegate {
 		}
 
 		get_module().log.info("Disabling dynmap integration");
+		if (update_all_task != null) {
+			update_all_task.cancel();
+			update_all_task = null;
+		}
 		dynmap_enabled = false;
 		dynmap_api = null;
 		marker_api = null;
@@ -144,19 +151,54 @@ public class PortalDynmapLayerDelegate {
 		marker.deleteMarker();
 	}
 
+	/**
+	 * Updates the markers of all portals in the background, a few per tick.
+	 * Markers of portals that no longer exist are removed at the end.
+	 */
 	public void update_all_markers() {
 		if (!dynmap_enabled) {
 			return;
 		}
 
-		// Update all existing
+		// Restart a running update, so it works on the current portals
+		if (update_all_task != null) {
+			update_all_task.cancel();
+		}
+
+		final var ids = new ArrayList<UUID>();
+		for (final var portal : get_module().all_portals()) {
+			ids.add(portal.id());
+		}
+
+		final var it = ids.iterator();
+		update_all_task =
+			parent.schedule_sliced_job(
+				"dynmap_markers",
+				TickScheduler.Priority.LOW,
+				1.0,
+				() -> {
+					if (it.hasNext()) {
+						// Portals that were removed in the meantime have already lost their marker
+						final var portal = get_module().portal_for(it.next());
+						if (portal != null) {
+							update_marker(portal);
+						}
+						return false;
+					}
+
+					remove_orphaned_markers();
+					update_all_task = null;
+					return true;
+				}
+			);
+	}
+
+	private void remove_orphaned_markers() {
 		final var id_set = new HashSet<String>();
 		for (final var portal : get_module().all_portals()) {
 			id_set.add(id_for(portal));
-			update_marker(portal);
 		}
 
-		// Remove orphaned
 		for (final var marker : marker_set.getMarkers()) {
 			final var id = marker.getMarkerID();
 			if (id != null && !id_set.contains(id)) {
@@ -9,25 +9,56 @@ import org.bukkit.entity.Entity;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.entity.EntityTeleportEvent;
-import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerPortalEvent;
 import org.oddlama.vane.core.Listener;
+import org.oddlama.vane.core.PlayerMovementDispatcher;
 import org.oddlama.vane.core.module.Context;
 
 public class PortalTeleporter extends Listener<Portals> {
 
 	private final HashMap<UUID, Location> entities_portalling = new HashMap<>();
+	private PlayerMovementDispatcher.Subscription movement_subscription;
 
 	public PortalTeleporter(Context<Portals> context) {
 		super(context);
 	}
 
+	@Override
+	protected void on_enable() {
+		super.on_enable();
+		// Rotations can neither enter nor leave a portal
+		movement_subscription =
+			get_module()
+				.core.movement_dispatcher.subscribe(
+					EventPriority.NORMAL,
+					PlayerMovementDispatcher.Change.POSITION,
+					this::on_player_move
+				);
+	}
+
+	@Override
+	protected void on_disable() {
+		get_module().core.movement_dispatcher.unsubscribe(movement_subscription);
+		movement_subscription = null;
+		super.on_disable();
+	}
+
 	private boolean cancel_portal_event(final Entity entity) {
 		if (entities_portalling.containsKey(entity.getUniqueId())) {
 			return true;
 		}
 
-		if (get_module().is_portal_block(entity.getLocation().getBlock())) {
+		// Checked by coordinates to avoid creating a block for every teleport
+		final var location = entity.getLocation();
+		if (
+			get_module()
+				.is_portal_block(
+					location.getWorld().getUID(),
+					location.getBlockX(),
+					location.getBlockY(),
+					location.getBlockZ()
+				)
+		) {
 			return true;
 		}
 
@@ -67,11 +98,11 @@ public class PortalTeleporter extends Listener<Portals> {
 		}
 	}
 
-	@EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
-	public void on_player_move(final PlayerMoveEvent event) {
-		final var player = event.getPlayer();
+	private void on_player_move(final PlayerMovementDispatcher.Movement movement) {
+		final var event = movement.event();
+		final var player = movement.player();
 		final var player_id = player.getUniqueId();
-		final var block = event.getTo().getBlock();
+		final var block = movement.to_block();
 
 		if (!entities_portalling.containsKey(player_id)) {
 			// Check if we walked into a portal
@@ -1,6 +1,7 @@
 package org.oddlama.vane.portals;
 
 import static org.oddlama.vane.util.BlockUtil.adjacent_blocks_3d;
+import static org.oddlama.vane.util.BlockUtil.group_by_chunk;
 import static org.oddlama.vane.util.BlockUtil.unpack;
 import static org.oddlama.vane.util.ItemUtil.name_item;
 import static org.oddlama.vane.util.Nms.item_handle;
@@ -10,9 +11,11 @@ import static org.oddlama.vane.util.Util.ms_to_ticks;
 import static org.oddlama.vane.util.Util.namespaced_key;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -60,10 +63,18 @@ import org.oddlama.vane.portals.menu.PortalMenuTag;
 import org.oddlama.vane.portals.portal.Orientation;
 import org.oddlama.vane.portals.portal.Portal;
 import org.oddlama.vane.portals.portal.PortalBlock;
+import org.oddlama.vane.portals.portal.PortalBlockIndex;
 import org.oddlama.vane.portals.portal.PortalBlockLookup;
 import org.oddlama.vane.portals.portal.Style;
 
-@VaneModule(name = "portals", bstats = 8642, config_version = 3, lang_version = 4, storage_version = 2)
+@VaneModule(
+	name = "portals",
+	bstats = 8642,
+	config_version = 3,
+	lang_version = 4,
+	storage_version = 3,
+	binary_storage = true
+)
 public class Portals extends Module<Portals> {
 	// Add (de-)serializers
 	static {
@@ -212,9 +223,8 @@ public class Portals extends Module<Portals> {
 	@Persistent
 	private Map<UUID, Portal> storage_portals = new HashMap<>();
 
-	// Primary storage for all portal blocks (world_id → chunk key → block key → portal block)
-	@Persistent
-	private Map<UUID, Map<Long, Map<Long, PortalBlockLookup>>> storage_portal_blocks_in_chunk_in_world = new HashMap<>();
+	// Acceleration structure for all portal blocks, rebuilt from the portals on enable
+	private final PortalBlockIndex portal_block_index = new PortalBlockIndex();
 
 	// All loaded styles
 	public Map<NamespacedKey, Style> styles = new HashMap<>();
@@ -222,7 +232,23 @@ public class Portals extends Module<Portals> {
 	public Set<Material> portal_area_materials = new HashSet<>();
 
 	// Track console items
-	private final Map<Block, FloatingItem> console_floating_items = new HashMap<>();
+	// Active console items by console block
+	private final Map<Block, ConsoleItem> console_floating_items = new HashMap<>();
+	// Console blocks with active items by portal id
+	private final Map<UUID, Set<Block>> console_blocks_of_portal = new HashMap<>();
+	// Ids of all portals targeting a portal by its id
+	private final Map<UUID, Set<UUID>> portals_targeting = new HashMap<>();
+
+	private static class ConsoleItem {
+
+		private final UUID portal_id;
+		private final FloatingItem item;
+
+		private ConsoleItem(final UUID portal_id, final FloatingItem item) {
+			this.portal_id = portal_id;
+			this.item = item;
+		}
+	}
 	// Connected portals (always stores both directions!)
 	private final Map<UUID, UUID> connected_portals = new HashMap<>();
 	// Unloading ticket counter per chunk
@@ -260,6 +286,24 @@ public class Portals extends Module<Portals> {
 			"Portal visibility GROUP_INTERNAL was added. This is a no-op.",
 			json -> {}
 		);
+		persistent_storage_manager.add_migration_to(
+			3,
+			"Portal blocks are now indexed from their portals and no longer stored separately.",
+			json -> json.remove(storage_path_of("storage_portal_blocks_in_chunk_in_world"))
+		);
+	}
+
+	@Override
+	public void on_enable() {
+		// Rebuild the portal block and target indices from the loaded portals
+		portal_block_index.clear();
+		portals_targeting.clear();
+		for (final var portal : storage_portals.values()) {
+			for (final var portal_block : portal.blocks()) {
+				index_add_portal_block(portal, portal_block);
+			}
+			index_add_target(portal);
+		}
 	}
 
 	@SuppressWarnings("unchecked")
@@ -386,19 +430,15 @@ public class Portals extends Module<Portals> {
 
 		// Replace references to the portal everywhere
 		// and update all changed portal consoles.
-		for (final var other : storage_portals.values()) {
-			if (Objects.equals(other.target_id(), portal.id())) {
-				other.target_id(null);
-				other
-					.blocks()
-					.stream()
-					.filter(pb -> pb.type() == PortalBlock.Type.CONSOLE)
-					.filter(pb -> console_floating_items.containsKey(pb.block()))
-					.forEach(pb -> update_console_item(other, pb.block()));
-			}
+		index_remove_target(portal);
+		for (final var other : portals_targeting_list(portal)) {
+			set_target(other, null);
+			journal_persistent_storage_put("storage_portals", other, other.id());
+			update_active_console_items(other);
 		}
+		portals_targeting.remove(portal.id());
 
-		mark_persistent_storage_dirty();
+		journal_persistent_storage_remove("storage_portals", portal.id());
 
 		// Close and taint all related open menus
 		get_module()
@@ -424,7 +464,8 @@ public class Portals extends Module<Portals> {
 
 	public void add_portal(final Portal portal) {
 		storage_portals.put(portal.id(), portal);
-		mark_persistent_storage_dirty();
+		index_add_target(portal);
+		journal_persistent_storage_put("storage_portals", portal, portal.id());
 
 		// Create map marker
 		update_marker(portal);
@@ -440,6 +481,55 @@ public class Portals extends Module<Portals> {
 		return storage_portals.values();
 	}
 
+	private void index_add_target(final Portal portal) {
+		if (portal.target_id() != null) {
+			portals_targeting.computeIfAbsent(portal.target_id(), k -> new HashSet<>()).add(portal.id());
+		}
+	}
+
+	private void index_remove_target(final Portal portal) {
+		if (portal.target_id() == null) {
+			return;
+		}
+
+		final var sources = portals_targeting.get(portal.target_id());
+		if (sources != null) {
+			sources.remove(portal.id());
+			if (sources.isEmpty()) {
+				portals_targeting.remove(portal.target_id());
+			}
+		}
+	}
+
+	/**
+	 * Sets the target of the given portal. Always use this instead of
+	 * {@link Portal#target_id(UUID)} to keep the target index up to date.
+	 */
+	public void set_target(final Portal portal, @Nullable final UUID target_id) {
+		index_remove_target(portal);
+		portal.target_id(target_id);
+		index_add_target(portal);
+	}
+
+	/**
+	 * Returns all portals that currently target the given portal.
+	 */
+	public List<Portal> portals_targeting_list(final Portal portal) {
+		final var sources = portals_targeting.get(portal.id());
+		final var result = new ArrayList<Portal>();
+		if (sources == null) {
+			return result;
+		}
+
+		for (final var id : sources) {
+			final var source = storage_portals.get(id);
+			if (source != null) {
+				result.add(source);
+			}
+		}
+		return result;
+	}
+
 	public void remove_portal_block(final PortalBlock portal_block) {
 		// Restore original block
 		switch (portal_block.type()) {
@@ -476,21 +566,10 @@ public class Portals extends Module<Portals> {
 
 		// Remove from acceleration structure
 		final var block = portal_block.block();
-		final var portal_blocks_in_chunk = storage_portal_blocks_in_chunk_in_world.get(block.getWorld().getUID());
-		if (portal_blocks_in_chunk == null) {
-			return;
-		}
-
-		final var chunk_key = block.getChunk().getChunkKey();
-		final var block_to_portal_block = portal_blocks_in_chunk.get(chunk_key);
-		if (block_to_portal_block == null) {
+		if (portal_block_index.remove(block.getWorld().getUID(), block.getX(), block.getY(), block.getZ()) == null) {
 			return;
 		}
 
-		final var block_key = block.getBlockKey();
-		block_to_portal_block.remove(block_key);
-		mark_persistent_storage_dirty();
-
 		// Spawn effect if not portal area
 		if (portal_block.type() != PortalBlock.Type.PORTAL) {
 			portal_block
@@ -511,6 +590,7 @@ public class Portals extends Module<Portals> {
 	public void remove_portal_block(final Portal portal, final PortalBlock portal_block) {
 		// Remove from portal
 		portal.blocks().remove(portal_block);
+		journal_persistent_storage_put("storage_portals", portal, portal.id());
 
 		// Remove from acceleration structure
 		remove_portal_block(portal_block);
@@ -519,26 +599,10 @@ public class Portals extends Module<Portals> {
 	public void add_portal_block(final Portal portal, final PortalBlock portal_block) {
 		// Add to portal
 		portal.blocks().add(portal_block);
+		journal_persistent_storage_put("storage_portals", portal, portal.id());
 
 		// Add to acceleration structure
-		final var block = portal_block.block();
-		final var world_id = block.getWorld().getUID();
-		var portal_blocks_in_chunk = storage_portal_blocks_in_chunk_in_world.get(world_id);
-		if (portal_blocks_in_chunk == null) {
-			portal_blocks_in_chunk = new HashMap<Long, Map<Long, PortalBlockLookup>>();
-			storage_portal_blocks_in_chunk_in_world.put(world_id, portal_blocks_in_chunk);
-		}
-
-		final var chunk_key = block.getChunk().getChunkKey();
-		var block_to_portal_block = portal_blocks_in_chunk.get(chunk_key);
-		if (block_to_portal_block == null) {
-			block_to_portal_block = new HashMap<Long, PortalBlockLookup>();
-			portal_blocks_in_chunk.put(chunk_key, block_to_portal_block);
-		}
-
-		final var block_key = block.getBlockKey();
-		block_to_portal_block.put(block_key, portal_block.lookup(portal.id()));
-		mark_persistent_storage_dirty();
+		index_add_portal_block(portal, portal_block);
 
 		// Spawn effect if not portal area
 		if (portal_block.type() != PortalBlock.Type.PORTAL) {
@@ -557,22 +621,13 @@ public class Portals extends Module<Portals> {
 		}
 	}
 
-	public PortalBlockLookup portal_block_for(final Block block) {
-		final var portal_blocks_in_chunk = storage_portal_blocks_in_chunk_in_world.get(block.getWorld().getUID());
-		if (portal_blocks_in_chunk == null) {
-			return null;
-		}
-
-		final var chunk_key = block.getChunk().getChunkKey();
-		final var block_to_portal_block = portal_blocks_in_chunk.get(chunk_key);
-		if (block_to_portal_block == null) {
-			return null;
-		}
+	private void index_add_portal_block(final Portal portal, final PortalBlock portal_block) {
+		final var block = portal_block.lazy_block();
+		portal_block_index.add(block.world_id(), block.x(), block.y(), block.z(), portal_block.lookup(portal.id()));
+	}
 
-		// getBlockKey stores more information than the location in the chunk,
-		// but this is okay here as we only need a unique key for every block in the chunk.
-		final var block_key = block.getBlockKey();
-		return block_to_portal_block.get(block_key);
+	public PortalBlockLookup portal_block_for(final Block block) {
+		return portal_block_index.get(block);
 	}
 
 	public Portal portal_for(@NotNull final PortalBlockLookup block) {
@@ -593,21 +648,57 @@ public class Portals extends Module<Portals> {
 	}
 
 	public boolean is_portal_block(final Block block) {
-		final var portal_blocks_in_chunk = storage_portal_blocks_in_chunk_in_world.get(block.getWorld().getUID());
-		if (portal_blocks_in_chunk == null) {
-			return false;
+		return portal_block_index.contains(block);
+	}
+
+	public boolean is_portal_block(final UUID world_id, int x, int y, int z) {
+		return portal_block_index.contains(world_id, x, y, z);
+	}
+
+	// Returns false if no chunk in the given range (inclusive) contains portal blocks.
+	public boolean may_contain_portal_blocks(
+		final UUID world_id,
+		int min_chunk_x,
+		int min_chunk_z,
+		int max_chunk_x,
+		int max_chunk_z
+	) {
+		for (int cx = min_chunk_x; cx <= max_chunk_x; ++cx) {
+			for (int cz = min_chunk_z; cz <= max_chunk_z; ++cz) {
+				if (portal_block_index.may_contain(world_id, cx, cz)) {
+					return true;
+				}
+			}
 		}
+		return false;
+	}
 
-		final var chunk_key = block.getChunk().getChunkKey();
-		final var block_to_portal_block = portal_blocks_in_chunk.get(chunk_key);
-		if (block_to_portal_block == null) {
-			return false;
+	// Batched variant of is_portal_block for a list of blocks in the same world.
+	// Returns a bitset with the indices of all portal blocks. The lookup map
+	// of each chunk is only resolved once for all blocks in that chunk.
+	public BitSet portal_blocks_in(final List<Block> blocks) {
+		final var portal_blocks = new BitSet(blocks.size());
+		if (blocks.isEmpty()) {
+			return portal_blocks;
+		}
+
+		final var world_id = blocks.get(0).getWorld().getUID();
+		for (final var entry : group_by_chunk(blocks).long2ObjectEntrySet()) {
+			final var block_to_portal_block = portal_block_index.blocks_in_chunk(world_id, entry.getLongKey());
+			if (block_to_portal_block == null) {
+				continue;
+			}
+
+			final var indices = entry.getValue();
+			for (int i = 0; i < indices.size(); ++i) {
+				final var index = indices.getInt(i);
+				if (block_to_portal_block.containsKey(blocks.get(index).getBlockKey())) {
+					portal_blocks.set(index);
+				}
+			}
 		}
 
-		// getBlockKey stores more information than the location in the chunk,
-		// but this is okay here as we only need a unique key for every block in the chunk.
-		final var block_key = block.getBlockKey();
-		return block_to_portal_block.containsKey(block_key);
+		return portal_blocks;
 	}
 
 	public Portal controlled_portal(final Block block) {
@@ -709,14 +800,14 @@ public class Portals extends Module<Portals> {
 
 		// Reset target id's if the target portal was transient
 		if (dst.visibility().is_transient_target()) {
-			src.target_id(null);
+			set_target(src, null);
 			src.update_blocks(this);
-			mark_persistent_storage_dirty();
+			journal_persistent_storage_put("storage_portals", src, src.id());
 		}
 		if (src.visibility().is_transient_target()) {
-			dst.target_id(null);
+			set_target(dst, null);
 			dst.update_blocks(this);
-			mark_persistent_storage_dirty();
+			journal_persistent_storage_put("storage_portals", dst, dst.id());
 		}
 
 		// Remove automatic disable task if existing
@@ -820,12 +911,9 @@ public class Portals extends Module<Portals> {
 		// Update map marker, as name could have changed
 		update_marker(portal);
 
-		for (final var active_console : console_floating_items.keySet()) {
-			final var portal_block = portal_block_for(active_console);
-			final var other = portal_for(portal_block);
-			if (Objects.equals(other.target_id(), portal.id())) {
-				update_console_item(other, active_console);
-			}
+		// Update the active consoles of all portals targeting this portal
+		for (final var other : portals_targeting_list(portal)) {
+			update_active_console_items(other);
 		}
 	}
 
@@ -836,17 +924,15 @@ public class Portals extends Module<Portals> {
 			case PRIVATE:
 			case GROUP:
 				// Not visible from outside, these are transient.
-				for (final var other : storage_portals.values()) {
-					if (Objects.equals(other.target_id(), portal.id())) {
-						other.target_id(null);
-					}
+				for (final var other : portals_targeting_list(portal)) {
+					set_target(other, null);
 				}
 				break;
 			case GROUP_INTERNAL:
 				// Remove from portals outside of the group
-				for (final var other : storage_portals.values()) {
-					if (Objects.equals(other.target_id(), portal.id()) && !is_in_same_region_group(other, portal)) {
-						other.target_id(null);
+				for (final var other : portals_targeting_list(portal)) {
+					if (!is_in_same_region_group(other, portal)) {
+						set_target(other, null);
 					}
 				}
 				break;
@@ -858,30 +944,50 @@ public class Portals extends Module<Portals> {
 		update_marker(portal);
 	}
 
+	private void update_active_console_items(final Portal portal) {
+		final var blocks = console_blocks_of_portal.get(portal.id());
+		if (blocks == null) {
+			return;
+		}
+
+		for (final var block : new ArrayList<>(blocks)) {
+			update_console_item(portal, block);
+		}
+	}
+
 	public void update_console_item(final Portal portal, final Block block) {
-		var console_item = console_floating_items.get(block);
-		final boolean is_new;
+		final var console_item = console_floating_items.get(block);
+		final FloatingItem floating_item;
 		if (console_item == null) {
-			console_item =
+			floating_item =
 				new FloatingItem(block.getWorld(), block.getX() + 0.5, block.getY() + 1.2, block.getZ() + 0.5);
-			is_new = true;
 		} else {
-			is_new = false;
+			floating_item = console_item.item;
 		}
 
 		final var active = is_activated(portal);
-		console_item.setItem(item_handle(make_console_item(portal, active)));
+		floating_item.setItem(item_handle(make_console_item(portal, active)));
 
-		if (is_new) {
-			console_floating_items.put(block, console_item);
-			spawn(block.getWorld(), console_item);
+		if (console_item == null) {
+			console_floating_items.put(block, new ConsoleItem(portal.id(), floating_item));
+			console_blocks_of_portal.computeIfAbsent(portal.id(), k -> new HashSet<>()).add(block);
+			spawn(block.getWorld(), floating_item);
 		}
 	}
 
 	public void remove_console_item(final Block block) {
 		final var console_item = console_floating_items.remove(block);
-		if (console_item != null) {
-			console_item.discard();
+		if (console_item == null) {
+			return;
+		}
+
+		console_item.item.discard();
+		final var blocks = console_blocks_of_portal.get(console_item.portal_id);
+		if (blocks != null) {
+			blocks.remove(block);
+			if (blocks.isEmpty()) {
+				console_blocks_of_portal.remove(console_item.portal_id);
+			}
 		}
 	}
 
@@ -889,23 +995,21 @@ public class Portals extends Module<Portals> {
 		final Chunk chunk,
 		final Consumer2<Block, PortalBlockLookup> consumer
 	) {
-		final var portal_blocks_in_chunk = storage_portal_blocks_in_chunk_in_world.get(chunk.getWorld().getUID());
-		if (portal_blocks_in_chunk == null) {
-			return;
-		}
-
-		final var chunk_key = chunk.getChunkKey();
-		final var block_to_portal_block = portal_blocks_in_chunk.get(chunk_key);
+		final var block_to_portal_block = portal_block_index.blocks_in_chunk(
+			chunk.getWorld().getUID(),
+			chunk.getX(),
+			chunk.getZ()
+		);
 		if (block_to_portal_block == null) {
 			return;
 		}
 
-		block_to_portal_block.forEach((k, v) -> {
-			if (v.type() == PortalBlock.Type.CONSOLE) {
-				final var block = unpack(chunk, k);
-				consumer.apply(block, v);
+		for (final var entry : block_to_portal_block.long2ObjectEntrySet()) {
+			final var lookup = entry.getValue();
+			if (lookup.type() == PortalBlock.Type.CONSOLE) {
+				consumer.apply(unpack(chunk, entry.getLongKey()), lookup);
 			}
-		});
+		}
 	}
 
 	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
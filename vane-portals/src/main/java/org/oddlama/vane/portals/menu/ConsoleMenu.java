@@ -249,7 +249,7 @@ public class ConsoleMenu extends ModuleComponent<Portals> {
 									return ClickResult.ERROR;
 								}
 
-								portal.target_id(t.id());
+								get_module().set_target(portal, t.id());
 
 								// Update portal block to reflect new target on consoles
 								portal.update_blocks(get_module());
@@ -43,6 +43,10 @@ public class PortalBlock {
 		return block.block();
 	}
 
+	public LazyBlock lazy_block() {
+		return block;
+	}
+
 	public Type type() {
 		return type;
 	}
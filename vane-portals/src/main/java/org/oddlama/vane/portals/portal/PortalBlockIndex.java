@@ -0,0 +1,164 @@
+package org.oddlama.vane.portals.portal;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.bukkit.Chunk;
+import org.bukkit.block.Block;
+
+/**
+ * Lookup of portal blocks by position (world id → chunk key → block key → portal block).
+ * Keys are computed from block coordinates only, so lookups never load chunks. Blocks
+ * in chunks without any portal blocks are usually rejected by a per-world chunk filter
+ * before any map is accessed.
+ * The index is derived from the portal blocks stored in each portal and is not persisted.
+ */
+public class PortalBlockIndex {
+
+	// Number of buckets in the chunk filter of each world (must be a power of two)
+	private static final int CHUNK_FILTER_BITS = 14;
+
+	private static class WorldIndex {
+
+		private final Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<PortalBlockLookup>> chunks = new Long2ObjectOpenHashMap<>();
+		// Counting filter over all chunks that contain portal blocks. A zero bucket
+		// guarantees that no chunk hashing to it contains any portal block, which
+		// answers the vast majority of queries with a single array read.
+		private final int[] chunk_filter = new int[1 << CHUNK_FILTER_BITS];
+
+		private static int bucket(int chunk_x, int chunk_z) {
+			return ((chunk_x * 0x9e3779b1) ^ (chunk_z * 0x85ebca6b)) >>> (32 - CHUNK_FILTER_BITS);
+		}
+
+		private boolean may_contain(int chunk_x, int chunk_z) {
+			return chunk_filter[bucket(chunk_x, chunk_z)] != 0;
+		}
+
+		private Long2ObjectOpenHashMap<PortalBlockLookup> blocks_in_chunk(int chunk_x, int chunk_z) {
+			if (!may_contain(chunk_x, chunk_z)) {
+				return null;
+			}
+			return chunks.get(Chunk.getChunkKey(chunk_x, chunk_z));
+		}
+	}
+
+	private final Map<UUID, WorldIndex> worlds = new HashMap<>();
+	// Most queries hit the same world as the previous one
+	private UUID last_world_id = null;
+	private WorldIndex last_world = null;
+
+	private WorldIndex world(final UUID world_id) {
+		if (world_id.equals(last_world_id)) {
+			return last_world;
+		}
+
+		last_world_id = world_id;
+		last_world = worlds.get(world_id);
+		return last_world;
+	}
+
+	public void clear() {
+		worlds.clear();
+		last_world_id = null;
+		last_world = null;
+	}
+
+	public void add(final UUID world_id, int x, int y, int z, final PortalBlockLookup lookup) {
+		var world = world(world_id);
+		if (world == null) {
+			world = new WorldIndex();
+			worlds.put(world_id, world);
+			last_world = world;
+		}
+
+		final var chunk_x = x >> 4;
+		final var chunk_z = z >> 4;
+		final var chunk_key = Chunk.getChunkKey(chunk_x, chunk_z);
+		var blocks = world.chunks.get(chunk_key);
+		if (blocks == null) {
+			blocks = new Long2ObjectOpenHashMap<>(4);
+			world.chunks.put(chunk_key, blocks);
+			++world.chunk_filter[WorldIndex.bucket(chunk_x, chunk_z)];
+		}
+		blocks.put(Block.getBlockKey(x, y, z), lookup);
+	}
+
+	public PortalBlockLookup remove(final UUID world_id, int x, int y, int z) {
+		final var world = world(world_id);
+		if (world == null) {
+			return null;
+		}
+
+		final var chunk_x = x >> 4;
+		final var chunk_z = z >> 4;
+		final var blocks = world.blocks_in_chunk(chunk_x, chunk_z);
+		if (blocks == null) {
+			return null;
+		}
+
+		final var lookup = blocks.remove(Block.getBlockKey(x, y, z));
+		// Drop empty chunks, so they take the fast path again
+		if (blocks.isEmpty()) {
+			world.chunks.remove(Chunk.getChunkKey(chunk_x, chunk_z));
+			--world.chunk_filter[WorldIndex.bucket(chunk_x, chunk_z)];
+		}
+		return lookup;
+	}
+
+	public PortalBlockLookup get(final UUID world_id, int x, int y, int z) {
+		final var blocks = blocks_in_chunk(world_id, x >> 4, z >> 4);
+		if (blocks == null) {
+			return null;
+		}
+		return blocks.get(Block.getBlockKey(x, y, z));
+	}
+
+	public PortalBlockLookup get(final Block block) {
+		return get(block.getWorld().getUID(), block.getX(), block.getY(), block.getZ());
+	}
+
+	public boolean contains(final UUID world_id, int x, int y, int z) {
+		final var blocks = blocks_in_chunk(world_id, x >> 4, z >> 4);
+		if (blocks == null) {
+			return false;
+		}
+		return blocks.containsKey(Block.getBlockKey(x, y, z));
+	}
+
+	public boolean contains(final Block block) {
+		return contains(block.getWorld().getUID(), block.getX(), block.getY(), block.getZ());
+	}
+
+	/**
+	 * Returns false if the given chunk certainly contains no portal blocks.
+	 * This never performs a map lookup and is meant to be checked before any
+	 * more expensive work for events that almost never involve portals.
+	 */
+	public boolean may_contain(final UUID world_id, int chunk_x, int chunk_z) {
+		final var world = world(world_id);
+		return world != null && world.may_contain(chunk_x, chunk_z);
+	}
+
+	// Returns the portal blocks (block key → portal block) of the given chunk, or null if it contains none.
+	public Long2ObjectMap<PortalBlockLookup> blocks_in_chunk(final UUID world_id, int chunk_x, int chunk_z) {
+		final var world = world(world_id);
+		if (world == null) {
+			return null;
+		}
+		return world.blocks_in_chunk(chunk_x, chunk_z);
+	}
+
+	public Long2ObjectMap<PortalBlockLookup> blocks_in_chunk(final UUID world_id, long chunk_key) {
+		final var world = world(world_id);
+		if (world == null) {
+			return null;
+		}
+		// Chunk keys store x in the lower and z in the upper 32 bits
+		if (!world.may_contain((int) chunk_key, (int) (chunk_key >> 32))) {
+			return null;
+		}
+		return world.chunks.get(chunk_key);
+	}
+}
@@ -107,20 +107,19 @@ public class RegionBlueMapLayerDelegate {
 	}
 
 	private void update_marker_no_save(final BlueMapAPI api, final MarkerSet marker_set, final Region region) {
-		final var min = region.extent().min();
-		final var max = region.extent().max();
-		final var shape = Shape.createRect(min.getX(), min.getZ(), max.getX() + 1, max.getZ() + 1);
+		final var extent = region.extent();
+		final var shape = Shape.createRect(extent.min_x(), extent.min_z(), extent.max_x() + 1, extent.max_z() + 1);
 
 		// Existing markers will be overwritten.
-		final var bm_world = api.getWorld(min.getWorld().getUID());
+		final var bm_world = api.getWorld(extent.world_id());
 		if (bm_world.isPresent()) {
 			for (final var map : bm_world.get().getMaps()) {
 				final var marker = marker_set.createExtrudeMarker(
 					id_for(map, region),
 					map,
 					shape,
-					min.getY(),
-					max.getY() + 1
+					extent.min_y(),
+					extent.max_y() + 1
 				);
 				marker.setLineWidth(parent.config_line_width);
 				marker.setLineColor(
@@ -150,7 +149,7 @@ public class RegionBlueMapLayerDelegate {
 					// Update all existing
 					final var id_set = new HashSet<String>();
 					for (final var region : get_module().all_regions()) {
-						final var bm_world = api.getWorld(region.extent().min().getWorld().getUID());
+						final var bm_world = api.getWorld(region.extent().world_id());
 						if (bm_world.isPresent()) {
 							for (final var map : bm_world.get().getMaps()) {
 								id_set.add(id_for(map, region));
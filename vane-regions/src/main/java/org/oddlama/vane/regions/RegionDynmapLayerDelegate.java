@@ -1,5 +1,6 @@
 package org.oddlama.vane.regions;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -8,6 +9,7 @@ import org.dynmap.DynmapAPI;
 import org.dynmap.markers.Marker;
 import org.dynmap.markers.MarkerAPI;
 import org.dynmap.markers.MarkerSet;
+import org.oddlama.vane.core.scheduler.TickScheduler;
 import org.oddlama.vane.regions.region.Region;
 
 public class RegionDynmapLayerDelegate {
@@ -19,6 +21,7 @@ public class RegionDynmapLayerDelegate {
 	private boolean dynmap_enabled = false;
 
 	private MarkerSet marker_set = null;
+	private TickScheduler.Task update_all_task = null;
 
 	public RegionDynmapLayerDelegate(final RegionDynmapLayer parent) {
 		this.parent = parent;
@@ -52,6 +55,10 @@ public class RegionDynmapLayerDelegate {
 		}
 
 		get_module().log.info("Disabling dynmap integration");
+		if (update_all_task != null) {
+			update_all_task.cancel();
+			update_all_task = null;
+		}
 		dynmap_enabled = false;
 		dynmap_api = null;
 		marker_api = null;
@@ -95,16 +102,21 @@ public class RegionDynmapLayerDelegate {
 		// Area markers can't be updated.
 		remove_marker(region.id());
 
-		final var min = region.extent().min();
-		final var max = region.extent().max();
-		final var world_name = min.getWorld().getName();
+		final var extent = region.extent();
+		final var world = get_module().getServer().getWorld(extent.world_id());
+		if (world == null) {
+			// World is not loaded, so there is nothing to show.
+			return;
+		}
+
+		final var world_name = world.getName();
 		final var marker_id = id_for(region);
 		final var marker_label = parent.lang_marker_label.str(region.name());
 
-		final var xs = new double[] { min.getX(), max.getX() + 1 };
-		final var zs = new double[] { min.getZ(), max.getZ() + 1 };
+		final var xs = new double[] { extent.min_x(), extent.max_x() + 1 };
+		final var zs = new double[] { extent.min_z(), extent.max_z() + 1 };
 		final var area = marker_set.createAreaMarker(marker_id, marker_label, false, world_name, xs, zs, false);
-		area.setRangeY(max.getY() + 1, min.getY());
+		area.setRangeY(extent.max_y() + 1, extent.min_y());
 		area.setLineStyle(parent.config_line_weight, parent.config_line_opacity, parent.config_line_color);
 		area.setFillStyle(parent.config_fill_opacity, parent.config_fill_color);
 	}
@@ -129,19 +141,54 @@ public class RegionDynmapLayerDelegate {
 		marker.deleteMarker();
 	}
 
+	/**
+	 * Updates the markers of all regions in the background, a few per tick.
+	 * Markers of regions that no longer exist are removed at the end.
+	 */
 	public void update_all_markers() {
 		if (!dynmap_enabled) {
 			return;
 		}
 
-		// Update all existing
+		// Restart a running update, so it works on the current regions
+		if (update_all_task != null) {
+			update_all_task.cancel();
+		}
+
+		final var ids = new ArrayList<UUID>();
+		for (final var region : get_module().all_regions()) {
+			ids.add(region.id());
+		}
+
+		final var it = ids.iterator();
+		update_all_task =
+			parent.schedule_sliced_job(
+				"dynmap_markers",
+				TickScheduler.Priority.LOW,
+				1.0,
+				() -> {
+					if (it.hasNext()) {
+						// Regions that were removed in the meantime have already lost their marker
+						final var region = get_module().region_for(it.next());
+						if (region != null) {
+							update_marker(region);
+						}
+						return false;
+					}
+
+					remove_orphaned_markers();
+					update_all_task = null;
+					return true;
+				}
+			);
+	}
+
+	private void remove_orphaned_markers() {
 		final var id_set = new HashSet<String>();
 		for (final var region : get_module().all_regions()) {
 			id_set.add(id_for(region));
-			update_marker(region);
 		}
 
-		// Remove orphaned
 		for (final var marker : marker_set.getMarkers()) {
 			final var id = marker.getMarkerID();
 			if (id != null && !id_set.contains(id)) {
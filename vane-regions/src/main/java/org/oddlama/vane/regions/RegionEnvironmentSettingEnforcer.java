@@ -1,5 +1,11 @@
 package org.oddlama.vane.regions;
 
+import static org.oddlama.vane.util.BlockUtil.group_by_chunk;
+import static org.oddlama.vane.util.Util.remove_marked;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
@@ -23,6 +29,7 @@ import org.bukkit.event.player.PlayerInteractEvent;
 import org.oddlama.vane.core.Listener;
 import org.oddlama.vane.core.module.Context;
 import org.oddlama.vane.regions.region.EnvironmentSetting;
+import org.oddlama.vane.regions.region.Region;
 
 public class RegionEnvironmentSettingEnforcer extends Listener<Regions> {
 
@@ -54,26 +61,69 @@ public class RegionEnvironmentSettingEnforcer extends Listener<Regions> {
 		return group.get_setting(setting) == check_against;
 	}
 
+	// Batched variant of check_setting_at for a list of blocks in the same world.
+	// Returns a bitset with the indices of all blocks for which the check matched.
+	// Candidate regions are only resolved once per chunk, so large block lists
+	// (e.g. from explosions) only cause a handful of index queries.
+	public BitSet check_setting_at(
+		final List<Block> blocks,
+		final EnvironmentSetting setting,
+		final boolean check_against
+	) {
+		final var matched = new BitSet(blocks.size());
+		if (blocks.isEmpty()) {
+			return matched;
+		}
+
+		final var world_id = blocks.get(0).getWorld().getUID();
+		final var candidates = new ArrayList<Region>();
+		for (final var indices : group_by_chunk(blocks).values()) {
+			// Collect all regions in this chunk for which the check would match
+			final var first = blocks.get(indices.getInt(0));
+			candidates.clear();
+			get_module()
+				.for_each_region_in_chunk(
+					world_id,
+					first.getX() >> 4,
+					first.getZ() >> 4,
+					region -> {
+						if (region.region_group(get_module()).get_setting(setting) == check_against) {
+							candidates.add(region);
+						}
+					}
+				);
+
+			if (candidates.isEmpty()) {
+				continue;
+			}
+
+			for (int i = 0; i < indices.size(); ++i) {
+				final var index = indices.getInt(i);
+				final var block = blocks.get(index);
+				for (final var region : candidates) {
+					if (region.extent().is_inside(world_id, block.getX(), block.getY(), block.getZ())) {
+						matched.set(index);
+						break;
+					}
+				}
+			}
+		}
+
+		return matched;
+	}
+
 	@EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
 	public void on_block_explode(final BlockExplodeEvent event) {
 		// Prevent explosions from removing region blocks
-		final var it = event.blockList().iterator();
-		while (it.hasNext()) {
-			if (check_setting_at(it.next(), EnvironmentSetting.EXPLOSIONS, false)) {
-				it.remove();
-			}
-		}
+		final var blocks = event.blockList();
+		remove_marked(blocks, check_setting_at(blocks, EnvironmentSetting.EXPLOSIONS, false));
 	}
 
 	@EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
 	public void on_entity_explode(final EntityExplodeEvent event) {
 		// Prevent explosions from removing region blocks
-		final var it = event.blockList().iterator();
-		while (it.hasNext()) {
-			if (check_setting_at(it.next(), EnvironmentSetting.EXPLOSIONS, false)) {
-				it.remove();
-			}
-		}
+		final var blocks = event.blockList();
+		remove_marked(blocks, check_setting_at(blocks, EnvironmentSetting.EXPLOSIONS, false));
 	}
 
 	@EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
@@ -1,5 +1,8 @@
 package org.oddlama.vane.regions;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.Tag;
@@ -27,6 +30,7 @@ import org.bukkit.event.player.PlayerBucketEmptyEvent;
 import org.bukkit.event.player.PlayerBucketFillEvent;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.oddlama.vane.core.Listener;
 import org.oddlama.vane.core.module.Context;
 import org.oddlama.vane.portals.event.PortalActivateEvent;
@@ -38,14 +42,73 @@ import org.oddlama.vane.portals.event.PortalLinkConsoleEvent;
 import org.oddlama.vane.portals.event.PortalOpenConsoleEvent;
 import org.oddlama.vane.portals.event.PortalSelectTargetEvent;
 import org.oddlama.vane.portals.event.PortalUnlinkConsoleEvent;
+import org.oddlama.vane.regions.region.Region;
+import org.oddlama.vane.regions.region.RegionGroup;
 import org.oddlama.vane.regions.region.RoleSetting;
 
 public class RegionRoleSettingEnforcer extends Listener<Regions> {
 
+	// Resolved role settings of a player in one region. Stays valid as long as
+	// the region belongs to the same group and that group's roles are unchanged.
+	private static class CachedRoleSettings {
+
+		private final Region region;
+		private final RegionGroup group;
+		private final long roles_generation;
+		private final int mask;
+
+		private CachedRoleSettings(final Region region, final RegionGroup group, final int mask) {
+			this.region = region;
+			this.group = group;
+			this.roles_generation = group.roles_generation();
+			this.mask = mask;
+		}
+
+		private boolean is_valid(final RegionGroup current_group) {
+			return group == current_group && roles_generation == current_group.roles_generation();
+		}
+	}
+
+	private static class PlayerRoleSettings {
+
+		// The entry for the region the player has most recently interacted in
+		private CachedRoleSettings current = null;
+		private final Map<UUID, CachedRoleSettings> by_region = new HashMap<>();
+	}
+
+	// Per-player cache of resolved role settings (player_uuid → region.id → settings bitmask)
+	private final Map<UUID, PlayerRoleSettings> role_settings_cache = new HashMap<>();
+
 	public RegionRoleSettingEnforcer(Context<Regions> context) {
 		super(context);
 	}
 
+	private int role_settings_mask(final Region region, final Player player) {
+		final var group = region.region_group(get_module());
+		var player_cache = role_settings_cache.get(player.getUniqueId());
+		if (player_cache == null) {
+			player_cache = new PlayerRoleSettings();
+			role_settings_cache.put(player.getUniqueId(), player_cache);
+		}
+
+		var cached = player_cache.current;
+		if (cached == null || cached.region != region) {
+			cached = player_cache.by_region.get(region.id());
+		}
+
+		if (cached == null || cached.region != region || !cached.is_valid(group)) {
+			cached = new CachedRoleSettings(region, group, group.get_role(player.getUniqueId()).settings_mask());
+			player_cache.by_region.put(region.id(), cached);
+		}
+
+		player_cache.current = cached;
+		return cached.mask;
+	}
+
+	public boolean has_setting(final Region region, final Player player, final RoleSetting setting) {
+		return (role_settings_mask(region, player) & setting.bit()) != 0;
+	}
+
 	public boolean check_setting_at(
 		final Location location,
 		final Player player,
@@ -57,8 +120,7 @@ public class RegionRoleSettingEnforcer extends Listener<Regions> {
 			return false;
 		}
 
-		final var group = region.region_group(get_module());
-		return group.get_role(player.getUniqueId()).get_setting(setting) == check_against;
+		return has_setting(region, player, setting) == check_against;
 	}
 
 	public boolean check_setting_at(
@@ -72,8 +134,12 @@ public class RegionRoleSettingEnforcer extends Listener<Regions> {
 			return false;
 		}
 
-		final var group = region.region_group(get_module());
-		return group.get_role(player.getUniqueId()).get_setting(setting) == check_against;
+		return has_setting(region, player, setting) == check_against;
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void on_player_quit(final PlayerQuitEvent event) {
+		role_settings_cache.remove(event.getPlayer().getUniqueId());
 	}
 
 	@EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
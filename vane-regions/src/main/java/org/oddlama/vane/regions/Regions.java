@@ -2,6 +2,8 @@ package org.oddlama.vane.regions;
 
 import static org.oddlama.vane.util.PlayerUtil.take_items;
 
+import com.comphenix.protocol.wrappers.WrappedParticle;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -9,14 +11,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
-import net.minecraft.core.BlockPos;
-import org.bukkit.Chunk;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import org.bukkit.Color;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.Particle;
 import org.bukkit.Particle.DustOptions;
-import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -36,6 +37,8 @@ import org.oddlama.vane.annotation.persistent.Persistent;
 import org.oddlama.vane.core.lang.TranslatedMessage;
 import org.oddlama.vane.core.module.Module;
 import org.oddlama.vane.core.persistent.PersistentSerializer;
+import org.oddlama.vane.core.scheduler.TickScheduler;
+import org.oddlama.vane.packet.WrapperPlayServerWorldParticles;
 import org.oddlama.vane.portals.Portals;
 import org.oddlama.vane.regions.menu.RegionGroupMenuTag;
 import org.oddlama.vane.regions.menu.RegionMenuGroup;
@@ -44,9 +47,11 @@ import org.oddlama.vane.regions.region.EnvironmentSetting;
 import org.oddlama.vane.regions.region.Region;
 import org.oddlama.vane.regions.region.RegionExtent;
 import org.oddlama.vane.regions.region.RegionGroup;
+import org.oddlama.vane.regions.region.RegionIndex;
 import org.oddlama.vane.regions.region.RegionSelection;
 import org.oddlama.vane.regions.region.Role;
 import org.oddlama.vane.regions.region.RoleSetting;
+import org.oddlama.vane.regions.region.SelectionGeometry;
 
 @VaneModule(name = "regions", bstats = 8643, config_version = 4, lang_version = 3, storage_version = 1)
 public class Regions extends Module<Regions> {
@@ -142,12 +147,15 @@ public class Regions extends Module<Regions> {
 	@Persistent
 	private Map<UUID, UUID> storage_default_region_group = new HashMap<>();
 
-	// Per-chunk lookup cache (world_id → chunk_key → [possible regions])
-	private Map<UUID, Map<Long, List<Region>>> regions_in_chunk_in_world = new HashMap<>();
+	// Spatial lookup index over all region extents (per-world R-tree).
+	// Queries use block coordinates only, so lookups never load chunks.
+	private RegionIndex region_index = new RegionIndex();
 	// A map containing the current extent for each player who is currently selecting a region
 	// No key → Player not in selection mode
 	// extent.min or extent.max null → Selection mode active, but no selection has been made yet
 	private Map<UUID, RegionSelection> region_selections = new HashMap<>();
+	private TickScheduler.Task visualize_selections_task = null;
+	private long region_revision = 0;
 
 	@LangMessage
 	public TranslatedMessage lang_start_region_selection;
@@ -163,13 +171,15 @@ public class Regions extends Module<Regions> {
 
 	public RegionEconomyDelegate economy;
 
+	public RegionRoleSettingEnforcer role_setting_enforcer;
+
 	public Regions() {
 		menus = new RegionMenuGroup(this);
 
 		new org.oddlama.vane.regions.commands.Region(this);
 
 		new RegionEnvironmentSettingEnforcer(this);
-		new RegionRoleSettingEnforcer(this);
+		role_setting_enforcer = new RegionRoleSettingEnforcer(this);
 		new RegionSelectionListener(this);
 		dynmap_layer = new RegionDynmapLayer(this);
 		blue_map_layer = new RegionBlueMapLayer(this);
@@ -235,19 +245,34 @@ public class Regions extends Module<Regions> {
 				// No region -> no restriction.
 				return true;
 			}
-			final var group = region.region_group(get_module());
-			return group.get_role(player.getUniqueId()).get_setting(RoleSetting.PORTAL);
+			return role_setting_enforcer.has_setting(region, player, RoleSetting.PORTAL);
 		});
 
 		schedule_next_tick(this::delayed_on_enable);
 		// Every second: Visualize selections
-		schedule_task_timer(this::visualize_selections, 1l, 20l);
+		visualize_selections_task = schedule_spread_timer("visualize_selections", this::visualize_selections, 1l, 20l);
+	}
+
+	@Override
+	public void on_disable() {
+		visualize_selections_task.cancel();
+		visualize_selections_task = null;
+	}
+
+	@Override
+	public void on_config_change() {
+		// Extent limits may have changed
+		++region_revision;
 	}
 
 	public Collection<Region> all_regions() {
 		return storage_regions.values();
 	}
 
+	public Region region_for(final UUID id) {
+		return storage_regions.get(id);
+	}
+
 	public Collection<RegionGroup> all_region_groups() {
 		return storage_region_groups.values();
 	}
@@ -269,126 +294,120 @@ public class Regions extends Module<Regions> {
 		return region_selections.get(player.getUniqueId());
 	}
 
-	private static final int visualize_max_particels = 20000;
-	private static final int visualize_particles_per_block = 12;
-	private static final double visualize_stddev_compensation = 0.25;
 	private static final DustOptions visualize_dust_invalid = new DustOptions(Color.fromRGB(230, 60, 11), 1.0f);
 	private static final DustOptions visualize_dust_valid = new DustOptions(Color.fromRGB(120, 220, 60), 1.0f);
 
-	private void visualize_edge(final World world, final BlockPos c1, final BlockPos c2, final boolean valid) {
-		// Unfortunately, particle spawns are normal distributed.
-		// To still have a good visualization, we need to calculate a stddev that looks
-		// good. Empirically we chose a 1/2 of the radius.
-		final double mx = (c1.getX() + c2.getX()) / 2.0 + 0.5;
-		final double my = (c1.getY() + c2.getY()) / 2.0 + 0.5;
-		final double mz = (c1.getZ() + c2.getZ()) / 2.0 + 0.5;
-		double dx = Math.abs(c1.getX() - c2.getX());
-		double dy = Math.abs(c1.getY() - c2.getY());
-		double dz = Math.abs(c1.getZ() - c2.getZ());
-		final double len = dx + dy + dz;
-		final int count = Math.min(visualize_max_particels, (int) (visualize_particles_per_block * len));
-
-		// Compensate for using normal distributed particles
-		dx *= visualize_stddev_compensation;
-		dy *= visualize_stddev_compensation;
-		dz *= visualize_stddev_compensation;
-
-		// Spawn base particles
-		world.spawnParticle(
-			Particle.END_ROD,
-			mx,
-			my,
-			mz,
-			count,
-			dx,
-			dy,
-			dz,
-			0.0, // speed
-			null, // data
-			true
-		); // force
-
-		// Spawn colored particles indicating validity
-		world.spawnParticle(
-			Particle.REDSTONE,
-			mx,
-			my,
-			mz,
-			count,
-			dx,
-			dy,
-			dz,
-			0.0, // speed
-			valid ? visualize_dust_valid : visualize_dust_invalid, // data
-			true
-		); // force
+	private static WrapperPlayServerWorldParticles edge_particles(
+		final WrappedParticle<?> particle,
+		final SelectionGeometry geometry,
+		int edge,
+		int count
+	) {
+		final var packet = new WrapperPlayServerWorldParticles();
+		packet.setParticle(particle);
+		packet.setLongDistance(true);
+		packet.setX(geometry.center_x(edge));
+		packet.setY(geometry.center_y(edge));
+		packet.setZ(geometry.center_z(edge));
+		packet.setOffsetX((float) geometry.spread_x(edge));
+		packet.setOffsetY((float) geometry.spread_y(edge));
+		packet.setOffsetZ((float) geometry.spread_z(edge));
+		packet.setParticleData(0.0f);
+		packet.setNumberOfParticles(count);
+		return packet;
 	}
 
-	private void visualize_selections() {
-		for (final var selection_owner : region_selections.keySet()) {
-			final var selection = region_selections.get(selection_owner);
-			if (selection == null) {
+	// Snapshot of everything needed to visualize one selection off the main thread
+	private static class SelectionVisualization {
+
+		private final Player player;
+		private final SelectionGeometry geometry;
+		private final boolean valid;
+		private final double x;
+		private final double y;
+		private final double z;
+
+		private SelectionVisualization(
+			final Player player,
+			final SelectionGeometry geometry,
+			boolean valid,
+			final Location location
+		) {
+			this.player = player;
+			this.geometry = geometry;
+			this.valid = valid;
+			this.x = location.getX();
+			this.y = location.getY();
+			this.z = location.getZ();
+		}
+	}
+
+	private void send_visualizations(final List<SelectionVisualization> visualizations) {
+		final var end_rod = WrappedParticle.create(Particle.END_ROD, null);
+		final var dust_valid = WrappedParticle.create(Particle.REDSTONE, visualize_dust_valid);
+		final var dust_invalid = WrappedParticle.create(Particle.REDSTONE, visualize_dust_invalid);
+
+		for (final var v : visualizations) {
+			// The player may have disconnected since the snapshot was taken
+			if (!v.player.isOnline()) {
 				continue;
 			}
 
-			// Get player for selection
-			final var offline_player = getServer().getOfflinePlayer(selection_owner);
-			if (!offline_player.isOnline()) {
+			final var dust = v.valid ? dust_valid : dust_invalid;
+			try {
+				for (int edge = 0; edge < SelectionGeometry.EDGE_COUNT; ++edge) {
+					final var count = v.geometry.particle_count(edge, v.x, v.y, v.z);
+					// Base particles and colored particles indicating validity
+					protocol_manager.sendServerPacket(
+						v.player,
+						edge_particles(end_rod, v.geometry, edge, count).getHandle()
+					);
+					protocol_manager.sendServerPacket(
+						v.player,
+						edge_particles(dust, v.geometry, edge, count).getHandle()
+					);
+				}
+			} catch (InvocationTargetException e) {
+				log.log(Level.WARNING, "Could not send selection particles to player '" + v.player.getName() + "'", e);
+			}
+		}
+	}
+
+	private void visualize_selections() {
+		// Only snapshot the selections here, the packets are built and sent asynchronously
+		final var visualizations = new ArrayList<SelectionVisualization>();
+		for (final var entry : region_selections.entrySet()) {
+			final var player = getServer().getPlayer(entry.getKey());
+			if (player == null) {
 				continue;
 			}
-			final var player = offline_player.getPlayer();
 
-			// Both blocks set
-			if (selection.primary == null || selection.secondary == null) {
+			// Both blocks set and worlds match
+			final var selection = entry.getValue();
+			final var geometry = selection.geometry();
+			if (geometry == null) {
 				continue;
 			}
 
-			// Worlds match
-			if (!selection.primary.getWorld().equals(selection.secondary.getWorld())) {
+			// Particles are only visible in the same world
+			final var location = player.getLocation();
+			if (!location.getWorld().getUID().equals(geometry.world_id())) {
 				continue;
 			}
 
-			// Extent is visualizable. Prepare parameters.
-			final var world = selection.primary.getWorld();
-			// Check if selection is valid
-			final var valid = selection.is_valid(player);
-
-			final var lx = Math.min(selection.primary.getX(), selection.secondary.getX());
-			final var ly = Math.min(selection.primary.getY(), selection.secondary.getY());
-			final var lz = Math.min(selection.primary.getZ(), selection.secondary.getZ());
-			final var hx = Math.max(selection.primary.getX(), selection.secondary.getX());
-			final var hy = Math.max(selection.primary.getY(), selection.secondary.getY());
-			final var hz = Math.max(selection.primary.getZ(), selection.secondary.getZ());
-
-			// Corners
-			final var A = new BlockPos(lx, ly, lz);
-			final var B = new BlockPos(hx, ly, lz);
-			final var C = new BlockPos(hx, hy, lz);
-			final var D = new BlockPos(lx, hy, lz);
-			final var E = new BlockPos(lx, ly, hz);
-			final var F = new BlockPos(hx, ly, hz);
-			final var G = new BlockPos(hx, hy, hz);
-			final var H = new BlockPos(lx, hy, hz);
-
-			// Visualize each edge
-			visualize_edge(world, A, B, valid);
-			visualize_edge(world, B, C, valid);
-			visualize_edge(world, C, D, valid);
-			visualize_edge(world, D, A, valid);
-			visualize_edge(world, E, F, valid);
-			visualize_edge(world, F, G, valid);
-			visualize_edge(world, G, H, valid);
-			visualize_edge(world, H, E, valid);
-			visualize_edge(world, A, E, valid);
-			visualize_edge(world, B, F, valid);
-			visualize_edge(world, C, G, valid);
-			visualize_edge(world, D, H, valid);
+			visualizations.add(new SelectionVisualization(player, geometry, selection.is_valid(player), location));
 		}
+
+		if (visualizations.isEmpty()) {
+			return;
+		}
+
+		getServer().getScheduler().runTaskAsynchronously(this, () -> send_visualizations(visualizations));
 	}
 
 	public void add_region_group(final RegionGroup group) {
 		storage_region_groups.put(group.id(), group);
-		mark_persistent_storage_dirty();
+		journal_persistent_storage_put("storage_region_groups", group, group.id());
 	}
 
 	public boolean can_remove_region_group(final RegionGroup group) {
@@ -407,6 +426,10 @@ public class Regions extends Module<Regions> {
 		return true;
 	}
 
+	public void mark_region_group_dirty(final RegionGroup group) {
+		journal_persistent_storage_put("storage_region_groups", group, group.id());
+	}
+
 	public void remove_region_group(final RegionGroup group) {
 		// Assert that this region group is unused.
 		if (!can_remove_region_group(group)) {
@@ -419,7 +442,7 @@ public class Regions extends Module<Regions> {
 			return;
 		}
 
-		mark_persistent_storage_dirty();
+		journal_persistent_storage_remove("storage_region_groups", group.id());
 
 		// Close and taint all related open menus
 		get_module()
@@ -488,7 +511,7 @@ public class Regions extends Module<Regions> {
 
 	public void add_region(final Region region) {
 		storage_regions.put(region.id(), region);
-		mark_persistent_storage_dirty();
+		journal_persistent_storage_put("storage_regions", region, region.id());
 
 		// Index region for fast lookup
 		index_add_region(region);
@@ -497,6 +520,10 @@ public class Regions extends Module<Regions> {
 		update_marker(region);
 	}
 
+	public void mark_region_dirty(final Region region) {
+		journal_persistent_storage_put("storage_regions", region, region.id());
+	}
+
 	public void remove_region(final Region region) {
 		// Remove region from storage
 		if (storage_regions.remove(region.id()) == null) {
@@ -504,7 +531,7 @@ public class Regions extends Module<Regions> {
 			return;
 		}
 
-		mark_persistent_storage_dirty();
+		journal_persistent_storage_remove("storage_regions", region.id());
 
 		// Close and taint all related open menus
 		get_module()
@@ -536,103 +563,41 @@ public class Regions extends Module<Regions> {
 	}
 
 	private void index_add_region(final Region region) {
-		// Adds the region to the lookup map at all intersecting chunks
-		final var min = region.extent().min();
-		final var max = region.extent().max();
-
-		final var world_id = min.getWorld().getUID();
-		var regions_in_chunk = regions_in_chunk_in_world.get(world_id);
-		if (regions_in_chunk == null) {
-			regions_in_chunk = new HashMap<Long, List<Region>>();
-			regions_in_chunk_in_world.put(world_id, regions_in_chunk);
-		}
-
-		final var min_chunk = min.getChunk();
-		final var max_chunk = max.getChunk();
-
-		// Iterate all the chunks which intersect the region
-		for (int cx = min_chunk.getX(); cx <= max_chunk.getX(); ++cx) {
-			for (int cz = min_chunk.getZ(); cz <= max_chunk.getZ(); ++cz) {
-				final var chunk_key = Chunk.getChunkKey(cx, cz);
-				var possible_regions = regions_in_chunk.get(chunk_key);
-				if (possible_regions == null) {
-					possible_regions = new ArrayList<Region>();
-					regions_in_chunk.put(chunk_key, possible_regions);
-				}
-				possible_regions.add(region);
-			}
-		}
+		region_index.add(region);
+		++region_revision;
 	}
 
 	private void index_remove_region(final Region region) {
-		// Removes the region from the lookup map at all intersecting chunks
-		final var min = region.extent().min();
-		final var max = region.extent().max();
+		region_index.remove(region);
+		++region_revision;
+	}
 
-		final var world_id = min.getWorld().getUID();
-		final var regions_in_chunk = regions_in_chunk_in_world.get(world_id);
-		if (regions_in_chunk == null) {
-			return;
-		}
+	/**
+	 * Returns a counter that changes whenever a region is added or removed,
+	 * or the configuration is reloaded. Used to invalidate cached selection checks.
+	 */
+	public long region_revision() {
+		return region_revision;
+	}
 
-		final var min_chunk = min.getChunk();
-		final var max_chunk = max.getChunk();
+	public boolean intersects_existing_region(final RegionExtent extent) {
+		return region_index.intersects_any(extent);
+	}
 
-		// Iterate all the chunks which intersect the region
-		for (int cx = min_chunk.getX(); cx <= max_chunk.getX(); ++cx) {
-			for (int cz = min_chunk.getZ(); cz <= max_chunk.getZ(); ++cz) {
-				final var chunk_key = Chunk.getChunkKey(cx, cz);
-				final var possible_regions = regions_in_chunk.get(chunk_key);
-				if (possible_regions == null) {
-					continue;
-				}
-				possible_regions.remove(region);
-			}
-		}
+	public void for_each_region_in_chunk(final UUID world_id, int cx, int cz, final Consumer<Region> consumer) {
+		region_index.for_each_intersecting_chunk(world_id, cx, cz, consumer);
 	}
 
 	public Region region_at(final Location loc) {
-		final var world_id = loc.getWorld().getUID();
-		final var regions_in_chunk = regions_in_chunk_in_world.get(world_id);
-		if (regions_in_chunk == null) {
-			return null;
-		}
-
-		final var chunk_key = loc.getChunk().getChunkKey();
-		final var possible_regions = regions_in_chunk.get(chunk_key);
-		if (possible_regions == null) {
-			return null;
-		}
-
-		for (final var region : possible_regions) {
-			if (region.extent().is_inside(loc)) {
-				return region;
-			}
-		}
-
-		return null;
+		return region_at(loc.getWorld().getUID(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
 	}
 
 	public Region region_at(final Block block) {
-		final var world_id = block.getWorld().getUID();
-		final var regions_in_chunk = regions_in_chunk_in_world.get(world_id);
-		if (regions_in_chunk == null) {
-			return null;
-		}
-
-		final var chunk_key = block.getChunk().getChunkKey();
-		final var possible_regions = regions_in_chunk.get(chunk_key);
-		if (possible_regions == null) {
-			return null;
-		}
-
-		for (final var region : possible_regions) {
-			if (region.extent().is_inside(block)) {
-				return region;
-			}
-		}
+		return region_at(block.getWorld().getUID(), block.getX(), block.getY(), block.getZ());
+	}
 
-		return null;
+	public Region region_at(final UUID world_id, int x, int y, int z) {
+		return region_index.region_at(world_id, x, y, z);
 	}
 
 	public boolean may_administrate(final Player player, final RegionGroup group) {
@@ -659,7 +624,7 @@ public class Regions extends Module<Regions> {
 
 		// Set group as the default
 		storage_default_region_group.put(owner_id, region_group.id());
-		mark_persistent_storage_dirty();
+		journal_persistent_storage_put("storage_default_region_group", region_group.id(), owner_id);
 
 		return region_group;
 	}
@@ -228,7 +228,7 @@ public class RegionGroupMenu extends ModuleComponent<Regions> {
 						group.name(),
 						(player2, name) -> {
 							group.name(name);
-							mark_persistent_storage_dirty();
+							get_module().mark_region_group_dirty(group);
 
 							// Open new menu because of possibly changed title
 							get_module().menus.region_group_menu.create(group, player2).open(player2);
@@ -299,7 +299,7 @@ public class RegionGroupMenu extends ModuleComponent<Regions> {
 						(player2, name) -> {
 							final var role = new Role(name, Role.RoleType.NORMAL);
 							group.add_role(role);
-							mark_persistent_storage_dirty();
+							get_module().mark_region_group_dirty(group);
 							get_module().menus.role_menu.create(group, role, player).open(player);
 							return ClickResult.SUCCESS;
 						}
@@ -374,7 +374,7 @@ public class RegionGroupMenu extends ModuleComponent<Regions> {
 				null,
 				(player, menu, self) -> {
 					group.settings().put(setting, !group.get_setting(setting));
-					mark_persistent_storage_dirty();
+					get_module().mark_region_group_dirty(group);
 					menu.update();
 					return ClickResult.SUCCESS;
 				}
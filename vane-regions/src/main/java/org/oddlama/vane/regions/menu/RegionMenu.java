@@ -124,7 +124,7 @@ public class RegionMenu extends ModuleComponent<Regions> {
 						region.name(),
 						(player2, name) -> {
 							region.name(name);
-							mark_persistent_storage_dirty();
+							get_module().mark_region_dirty(region);
 
 							// Update map marker
 							get_module().update_marker(region);
@@ -232,7 +232,7 @@ public class RegionMenu extends ModuleComponent<Regions> {
 
 							m.close(player2);
 							region.region_group_id(group.id());
-							mark_persistent_storage_dirty();
+							get_module().mark_region_dirty(region);
 							menu.open(player2);
 							return ClickResult.SUCCESS;
 						},
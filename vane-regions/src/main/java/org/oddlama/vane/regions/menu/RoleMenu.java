@@ -189,11 +189,11 @@ public class RoleMenu extends ModuleComponent<Regions> {
 			role_menu.add(menu_item_remove_player(group, role));
 		}
 
-		add_menu_item_setting(role_menu, role, 0, item_setting_info_admin, RoleSetting.ADMIN);
-		add_menu_item_setting(role_menu, role, 2, item_setting_info_build, RoleSetting.BUILD);
-		add_menu_item_setting(role_menu, role, 4, item_setting_info_use, RoleSetting.USE);
-		add_menu_item_setting(role_menu, role, 5, item_setting_info_container, RoleSetting.CONTAINER);
-		add_menu_item_setting(role_menu, role, 8, item_setting_info_portal, RoleSetting.PORTAL);
+		add_menu_item_setting(role_menu, group, role, 0, item_setting_info_admin, RoleSetting.ADMIN);
+		add_menu_item_setting(role_menu, group, role, 2, item_setting_info_build, RoleSetting.BUILD);
+		add_menu_item_setting(role_menu, group, role, 4, item_setting_info_use, RoleSetting.USE);
+		add_menu_item_setting(role_menu, group, role, 5, item_setting_info_container, RoleSetting.CONTAINER);
+		add_menu_item_setting(role_menu, group, role, 8, item_setting_info_portal, RoleSetting.PORTAL);
 
 		role_menu.on_natural_close(player2 -> get_module().menus.region_group_menu.create(group, player2).open(player2)
 		);
@@ -214,7 +214,7 @@ public class RoleMenu extends ModuleComponent<Regions> {
 						role.name(),
 						(player2, name) -> {
 							role.name(name);
-							mark_persistent_storage_dirty();
+							get_module().mark_region_group_dirty(group);
 
 							// Open new menu because of possibly changed title
 							get_module().menus.role_menu.create(group, role, player2).open(player2);
@@ -245,7 +245,7 @@ public class RoleMenu extends ModuleComponent<Regions> {
 						item_delete_confirm_accept.item(),
 						player2 -> {
 							group.remove_role(role.id());
-							mark_persistent_storage_dirty();
+							get_module().mark_region_group_dirty(group);
 							return ClickResult.SUCCESS;
 						},
 						item_delete_confirm_cancel.item(),
@@ -294,6 +294,8 @@ public class RoleMenu extends ModuleComponent<Regions> {
 							all_players.remove(p);
 							m.update();
 							group.player_to_role().put(p.getUniqueId(), role.id());
+							group.mark_roles_changed();
+							get_module().mark_region_group_dirty(group);
 							return ClickResult.SUCCESS;
 						},
 						player2 -> {
@@ -341,6 +343,8 @@ public class RoleMenu extends ModuleComponent<Regions> {
 							all_players.remove(p);
 							m.update();
 							group.player_to_role().remove(p.getUniqueId());
+							group.mark_roles_changed();
+							get_module().mark_region_group_dirty(group);
 							return ClickResult.SUCCESS;
 						},
 						player2 -> {
@@ -355,6 +359,7 @@ public class RoleMenu extends ModuleComponent<Regions> {
 
 	private void add_menu_item_setting(
 		final Menu role_menu,
+		final RegionGroup group,
 		final Role role,
 		final int col,
 		final TranslatedItemStack<?> item_info,
@@ -381,7 +386,8 @@ public class RoleMenu extends ModuleComponent<Regions> {
 					}
 
 					role.settings().put(setting, !role.get_setting(setting));
-					mark_persistent_storage_dirty();
+					group.mark_roles_changed();
+					get_module().mark_region_group_dirty(group);
 					menu.update();
 					return ClickResult.SUCCESS;
 				}
@@ -4,6 +4,8 @@ import static org.oddlama.vane.core.persistent.PersistentSerializer.from_json;
 import static org.oddlama.vane.core.persistent.PersistentSerializer.to_json;
 
 import java.io.IOException;
+import java.util.UUID;
+import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.block.Block;
@@ -32,10 +34,28 @@ public class RegionExtent {
 	// blocks outside of the world (y<min_height || y>max_height).
 	// Also, coordinates are sorted, so min is always the smaller coordinate on each axis.
 	// For each x,y,z: min.[x,y,z] <= max.[x,y,z]
-	private LazyBlock min; // inclusive
-	private LazyBlock max; // inclusive
+	// Bounds are kept as primitives, so containment tests never have to
+	// materialize blocks or resolve the world, which may also be unloaded.
+	private final UUID world_id;
+	private final int min_x; // inclusive
+	private final int min_y; // inclusive
+	private final int min_z; // inclusive
+	private final int max_x; // inclusive
+	private final int max_y; // inclusive
+	private final int max_z; // inclusive
+
+	// Lazily resolved corner blocks, only used for callers that need actual blocks
+	private final LazyBlock min;
+	private final LazyBlock max;
 
 	public RegionExtent(final LazyBlock min, final LazyBlock max) {
+		this.world_id = min.world_id();
+		this.min_x = min.x();
+		this.min_y = min.y();
+		this.min_z = min.z();
+		this.max_x = max.x();
+		this.max_y = max.y();
+		this.max_z = max.z();
 		this.min = min;
 		this.max = max;
 	}
@@ -46,131 +66,96 @@ public class RegionExtent {
 		}
 
 		// Sort coordinates along axes.
-		this.min =
-			new LazyBlock(
-				from
-					.getWorld()
-					.getBlockAt(
-						Math.min(from.getX(), to.getX()),
-						Math.min(from.getY(), to.getY()),
-						Math.min(from.getZ(), to.getZ())
-					)
-			);
-		this.max =
-			new LazyBlock(
-				from
-					.getWorld()
-					.getBlockAt(
-						Math.max(from.getX(), to.getX()),
-						Math.max(from.getY(), to.getY()),
-						Math.max(from.getZ(), to.getZ())
-					)
-			);
+		this.world_id = from.getWorld().getUID();
+		this.min_x = Math.min(from.getX(), to.getX());
+		this.min_y = Math.min(from.getY(), to.getY());
+		this.min_z = Math.min(from.getZ(), to.getZ());
+		this.max_x = Math.max(from.getX(), to.getX());
+		this.max_y = Math.max(from.getY(), to.getY());
+		this.max_z = Math.max(from.getZ(), to.getZ());
+		this.min = new LazyBlock(world_id, min_x, min_y, min_z);
+		this.max = new LazyBlock(world_id, max_x, max_y, max_z);
 	}
 
+	// Returns null if the world of this extent is currently not loaded.
 	public Block min() {
-		return min.block();
+		return Bukkit.getWorld(world_id) == null ? null : min.block();
 	}
 
+	// Returns null if the world of this extent is currently not loaded.
 	public Block max() {
-		return max.block();
+		return Bukkit.getWorld(world_id) == null ? null : max.block();
 	}
 
-	public boolean is_inside(final Location loc) {
-		if (!loc.getWorld().equals(min().getWorld())) {
-			return false;
-		}
+	public UUID world_id() {
+		return world_id;
+	}
 
-		final var l = min();
-		final var h = max();
-		return (
-			loc.getX() >= l.getX() &&
-			loc.getX() < (h.getX() + 1) &&
-			loc.getY() >= l.getY() &&
-			loc.getY() < (h.getY() + 1) &&
-			loc.getZ() >= l.getZ() &&
-			loc.getZ() < (h.getZ() + 1)
-		);
+	public int min_x() {
+		return min_x;
+	}
+
+	public int min_y() {
+		return min_y;
+	}
+
+	public int min_z() {
+		return min_z;
+	}
+
+	public int max_x() {
+		return max_x;
+	}
+
+	public int max_y() {
+		return max_y;
+	}
+
+	public int max_z() {
+		return max_z;
+	}
+
+	public boolean is_inside(final Location loc) {
+		return is_inside(loc.getWorld().getUID(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
 	}
 
 	public boolean is_inside(final Block block) {
-		if (!block.getWorld().equals(min().getWorld())) {
+		return is_inside(block.getWorld().getUID(), block.getX(), block.getY(), block.getZ());
+	}
+
+	public boolean is_inside(final UUID world_id, int x, int y, int z) {
+		if (!this.world_id.equals(world_id)) {
 			return false;
 		}
 
-		final var l = min();
-		final var h = max();
-		return (
-			block.getX() >= l.getX() &&
-			block.getX() <= h.getX() &&
-			block.getY() >= l.getY() &&
-			block.getY() <= h.getY() &&
-			block.getZ() >= l.getZ() &&
-			block.getZ() <= h.getZ()
-		);
+		return x >= min_x && x <= max_x && y >= min_y && y <= max_y && z >= min_z && z <= max_z;
 	}
 
 	public boolean intersects_extent(final RegionExtent other) {
-		if (!min().getWorld().equals(other.min().getWorld())) {
+		if (!world_id.equals(other.world_id)) {
 			return false;
 		}
 
-		final var l1 = min();
-		final var h1 = max();
-		final var l2 = other.min();
-		final var h2 = other.max();
-
-		// Compute global min and max for each axis
-		final var llx = Math.min(l1.getX(), l2.getX());
-		final var lly = Math.min(l1.getY(), l2.getY());
-		final var llz = Math.min(l1.getZ(), l2.getZ());
-		final var hhx = Math.max(h1.getX(), h2.getX());
-		final var hhy = Math.max(h1.getY(), h2.getY());
-		final var hhz = Math.max(h1.getZ(), h2.getZ());
-
-		// Compute global extent length
-		final var extent_global_x = (hhx - llx) + 1;
-		final var extent_global_y = (hhy - lly) + 1;
-		final var extent_global_z = (hhz - llz) + 1;
-
-		// Compute sum of local extent lengths
-		final var extent_sum_x = (h2.getX() - l2.getX()) + (h1.getX() - l1.getX()) + 2;
-		final var extent_sum_y = (h2.getY() - l2.getY()) + (h1.getY() - l1.getY()) + 2;
-		final var extent_sum_z = (h2.getZ() - l2.getZ()) + (h1.getZ() - l1.getZ()) + 2;
-
-		// It intersects exactly when:
-		//   for all a in axis: global_extent(a) < individual_extent_sum(a)
-		return extent_global_x < extent_sum_x && extent_global_y < extent_sum_y && extent_global_z < extent_sum_z;
+		// Two boxes intersect exactly when they overlap on every axis
+		return (
+			min_x <= other.max_x &&
+			other.min_x <= max_x &&
+			min_y <= other.max_y &&
+			other.min_y <= max_y &&
+			min_z <= other.max_z &&
+			other.min_z <= max_z
+		);
 	}
 
 	public boolean intersects_chunk(final Chunk chunk) {
-		if (!chunk.getWorld().equals(min().getWorld())) {
+		return intersects_chunk(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ());
+	}
+
+	public boolean intersects_chunk(final UUID world_id, int cx, int cz) {
+		if (!this.world_id.equals(world_id)) {
 			return false;
 		}
 
-		final var l1 = min();
-		final var h1 = max();
-		final var l2x = chunk.getX() * 16;
-		final var l2z = chunk.getZ() * 16;
-		final var h2x = (chunk.getX() + 1) * 16 - 1;
-		final var h2z = (chunk.getZ() + 1) * 16 - 1;
-
-		// Compute global min and max for each axis
-		final var llx = Math.min(l1.getX(), l2x);
-		final var llz = Math.min(l1.getZ(), l2z);
-		final var hhx = Math.max(h1.getX(), h2x);
-		final var hhz = Math.max(h1.getZ(), h2z);
-
-		// Compute global extent length
-		final var extent_global_x = (hhx - llx) + 1;
-		final var extent_global_z = (hhz - llz) + 1;
-
-		// Compute sum of local extent lengths
-		final var extent_sum_x = (h2x - l2x) + (h1.getX() - l1.getX()) + 2;
-		final var extent_sum_z = (h2z - l2z) + (h1.getZ() - l1.getZ()) + 2;
-
-		// It intersects exactly when:
-		//   for all a in axis: global_extent(a) < individual_extent_sum(a)
-		return extent_global_x < extent_sum_x && extent_global_z < extent_sum_z;
+		return min_x <= (cx << 4) + 15 && (cx << 4) <= max_x && min_z <= (cz << 4) + 15 && (cz << 4) <= max_z;
 	}
 }
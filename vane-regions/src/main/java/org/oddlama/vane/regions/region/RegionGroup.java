@@ -88,6 +88,10 @@ public class RegionGroup {
 
 	private Map<EnvironmentSetting, Boolean> settings = new HashMap<>();
 
+	// Incremented whenever roles, role settings or role assignments change.
+	// Not persisted, only used to invalidate cached role lookups.
+	private long roles_generation = 0;
+
 	private RegionGroup() {}
 
 	public RegionGroup(final String name, final UUID owner) {
@@ -147,6 +151,7 @@ public class RegionGroup {
 
 	public void add_role(final Role role) {
 		this.roles.put(role.id(), role);
+		mark_roles_changed();
 	}
 
 	public Map<UUID, UUID> player_to_role() {
@@ -160,6 +165,15 @@ public class RegionGroup {
 	public void remove_role(final UUID role_id) {
 		player_to_role.values().removeIf(r -> role_id.equals(r));
 		roles.remove(role_id);
+		mark_roles_changed();
+	}
+
+	public long roles_generation() {
+		return roles_generation;
+	}
+
+	public void mark_roles_changed() {
+		++roles_generation;
 	}
 
 	public Collection<Role> roles() {
@@ -0,0 +1,453 @@
+package org.oddlama.vane.regions.region;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+// A per-world R-tree over the inclusive integer bounds of region extents.
+// Point and box queries only descend into nodes whose bounding box matches,
+// so lookups scale logarithmically with the amount of regions in a world.
+public class RegionIndex {
+
+	private static final int MAX_ENTRIES = 8;
+	private static final int MIN_ENTRIES = 3;
+
+	// Six ints per box: lx, ly, lz, hx, hy, hz (all inclusive)
+	private static final int B = 6;
+
+	private static class Node {
+
+		private final boolean leaf;
+		private Node parent = null;
+		private int count = 0;
+		// Regions for leaf nodes, child nodes otherwise. One spare slot for overflow before splitting.
+		private final Object[] children = new Object[MAX_ENTRIES + 1];
+		private final int[] bounds = new int[B * (MAX_ENTRIES + 1)];
+
+		private Node(boolean leaf) {
+			this.leaf = leaf;
+		}
+	}
+
+	private final Map<UUID, Node> roots = new HashMap<>();
+
+	public void add(final Region region) {
+		final var world_id = region.extent().world_id();
+		var root = roots.get(world_id);
+		if (root == null) {
+			root = new Node(true);
+			roots.put(world_id, root);
+		}
+
+		final var b = new int[B];
+		region_bounds(region, b, 0);
+
+		final var leaf = choose_leaf(root, b);
+		add_child(leaf, region, b, 0);
+		adjust_tree(world_id, leaf);
+	}
+
+	public boolean remove(final Region region) {
+		final var world_id = region.extent().world_id();
+		final var root = roots.get(world_id);
+		if (root == null) {
+			return false;
+		}
+
+		final var b = new int[B];
+		region_bounds(region, b, 0);
+
+		final var leaf = find_leaf(root, region, b);
+		if (leaf == null) {
+			return false;
+		}
+
+		remove_child(leaf, index_of(leaf, region));
+		condense_tree(world_id, leaf);
+		return true;
+	}
+
+	public void clear() {
+		roots.clear();
+	}
+
+	public Region region_at(final UUID world_id, int x, int y, int z) {
+		final var root = roots.get(world_id);
+		if (root == null) {
+			return null;
+		}
+		return region_at(root, x, y, z);
+	}
+
+	public boolean intersects_any(final RegionExtent extent) {
+		final var root = roots.get(extent.world_id());
+		if (root == null) {
+			return false;
+		}
+		return intersects_any(
+			root,
+			extent.min_x(),
+			extent.min_y(),
+			extent.min_z(),
+			extent.max_x(),
+			extent.max_y(),
+			extent.max_z()
+		);
+	}
+
+	public void for_each_intersecting(
+		final UUID world_id,
+		int lx,
+		int ly,
+		int lz,
+		int hx,
+		int hy,
+		int hz,
+		final Consumer<Region> consumer
+	) {
+		final var root = roots.get(world_id);
+		if (root == null) {
+			return;
+		}
+		for_each_intersecting(root, lx, ly, lz, hx, hy, hz, consumer);
+	}
+
+	public void for_each_intersecting_chunk(final UUID world_id, int cx, int cz, final Consumer<Region> consumer) {
+		for_each_intersecting(
+			world_id,
+			cx << 4,
+			Integer.MIN_VALUE,
+			cz << 4,
+			(cx << 4) + 15,
+			Integer.MAX_VALUE,
+			(cz << 4) + 15,
+			consumer
+		);
+	}
+
+	private static Region region_at(final Node node, int x, int y, int z) {
+		for (int i = 0; i < node.count; ++i) {
+			final var o = i * B;
+			final var bs = node.bounds;
+			if (
+				x < bs[o] || y < bs[o + 1] || z < bs[o + 2] || x > bs[o + 3] || y > bs[o + 4] || z > bs[o + 5]
+			) {
+				continue;
+			}
+
+			if (node.leaf) {
+				return (Region) node.children[i];
+			}
+
+			final var region = region_at((Node) node.children[i], x, y, z);
+			if (region != null) {
+				return region;
+			}
+		}
+		return null;
+	}
+
+	private static boolean intersects_any(final Node node, int lx, int ly, int lz, int hx, int hy, int hz) {
+		for (int i = 0; i < node.count; ++i) {
+			if (!intersects(node.bounds, i * B, lx, ly, lz, hx, hy, hz)) {
+				continue;
+			}
+
+			if (node.leaf || intersects_any((Node) node.children[i], lx, ly, lz, hx, hy, hz)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void for_each_intersecting(
+		final Node node,
+		int lx,
+		int ly,
+		int lz,
+		int hx,
+		int hy,
+		int hz,
+		final Consumer<Region> consumer
+	) {
+		for (int i = 0; i < node.count; ++i) {
+			if (!intersects(node.bounds, i * B, lx, ly, lz, hx, hy, hz)) {
+				continue;
+			}
+
+			if (node.leaf) {
+				consumer.accept((Region) node.children[i]);
+			} else {
+				for_each_intersecting((Node) node.children[i], lx, ly, lz, hx, hy, hz, consumer);
+			}
+		}
+	}
+
+	private static boolean intersects(final int[] bs, int o, int lx, int ly, int lz, int hx, int hy, int hz) {
+		return (
+			bs[o] <= hx && bs[o + 3] >= lx && bs[o + 1] <= hy && bs[o + 4] >= ly && bs[o + 2] <= hz && bs[o + 5] >= lz
+		);
+	}
+
+	private static boolean contains(final int[] bs, int o, final int[] b) {
+		return (
+			bs[o] <= b[0] &&
+			bs[o + 1] <= b[1] &&
+			bs[o + 2] <= b[2] &&
+			bs[o + 3] >= b[3] &&
+			bs[o + 4] >= b[4] &&
+			bs[o + 5] >= b[5]
+		);
+	}
+
+	private static void region_bounds(final Region region, final int[] out, int o) {
+		final var extent = region.extent();
+		out[o] = extent.min_x();
+		out[o + 1] = extent.min_y();
+		out[o + 2] = extent.min_z();
+		out[o + 3] = extent.max_x();
+		out[o + 4] = extent.max_y();
+		out[o + 5] = extent.max_z();
+	}
+
+	private static void node_bounds(final Node node, final int[] out, int o) {
+		out[o] = Integer.MAX_VALUE;
+		out[o + 1] = Integer.MAX_VALUE;
+		out[o + 2] = Integer.MAX_VALUE;
+		out[o + 3] = Integer.MIN_VALUE;
+		out[o + 4] = Integer.MIN_VALUE;
+		out[o + 5] = Integer.MIN_VALUE;
+		for (int i = 0; i < node.count; ++i) {
+			include(out, o, node.bounds, i * B);
+		}
+	}
+
+	private static void include(final int[] out, int o, final int[] b, int bo) {
+		out[o] = Math.min(out[o], b[bo]);
+		out[o + 1] = Math.min(out[o + 1], b[bo + 1]);
+		out[o + 2] = Math.min(out[o + 2], b[bo + 2]);
+		out[o + 3] = Math.max(out[o + 3], b[bo + 3]);
+		out[o + 4] = Math.max(out[o + 4], b[bo + 4]);
+		out[o + 5] = Math.max(out[o + 5], b[bo + 5]);
+	}
+
+	private static double volume(final int[] b, int o) {
+		return (
+			((double) b[o + 3] - b[o] + 1) * ((double) b[o + 4] - b[o + 1] + 1) * ((double) b[o + 5] - b[o + 2] + 1)
+		);
+	}
+
+	private static double union_volume(final int[] a, int ao, final int[] b, int bo) {
+		return (
+			((double) Math.max(a[ao + 3], b[bo + 3]) - Math.min(a[ao], b[bo]) + 1) *
+			((double) Math.max(a[ao + 4], b[bo + 4]) - Math.min(a[ao + 1], b[bo + 1]) + 1) *
+			((double) Math.max(a[ao + 5], b[bo + 5]) - Math.min(a[ao + 2], b[bo + 2]) + 1)
+		);
+	}
+
+	private static void add_child(final Node node, final Object child, final int[] b, int bo) {
+		node.children[node.count] = child;
+		System.arraycopy(b, bo, node.bounds, node.count * B, B);
+		++node.count;
+		if (child instanceof Node) {
+			((Node) child).parent = node;
+		}
+	}
+
+	private static void add_child(final Node node, final Node child) {
+		final var b = new int[B];
+		node_bounds(child, b, 0);
+		add_child(node, child, b, 0);
+	}
+
+	private static void remove_child(final Node node, int i) {
+		final var last = node.count - 1;
+		node.children[i] = node.children[last];
+		System.arraycopy(node.bounds, last * B, node.bounds, i * B, B);
+		node.children[last] = null;
+		--node.count;
+	}
+
+	private static int index_of(final Node node, final Object child) {
+		for (int i = 0; i < node.count; ++i) {
+			if (node.children[i] == child) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static void update_child_bounds(final Node parent, final Node child) {
+		node_bounds(child, parent.bounds, index_of(parent, child) * B);
+	}
+
+	private static Node choose_leaf(Node node, final int[] b) {
+		while (!node.leaf) {
+			int best = 0;
+			double best_enlargement = Double.MAX_VALUE;
+			double best_volume = Double.MAX_VALUE;
+			for (int i = 0; i < node.count; ++i) {
+				final var vol = volume(node.bounds, i * B);
+				final var enlargement = union_volume(node.bounds, i * B, b, 0) - vol;
+				if (enlargement < best_enlargement || (enlargement == best_enlargement && vol < best_volume)) {
+					best = i;
+					best_enlargement = enlargement;
+					best_volume = vol;
+				}
+			}
+			node = (Node) node.children[best];
+		}
+		return node;
+	}
+
+	private static Node find_leaf(final Node node, final Region region, final int[] b) {
+		for (int i = 0; i < node.count; ++i) {
+			if (node.leaf) {
+				if (node.children[i] == region) {
+					return node;
+				}
+			} else if (contains(node.bounds, i * B, b)) {
+				final var leaf = find_leaf((Node) node.children[i], region, b);
+				if (leaf != null) {
+					return leaf;
+				}
+			}
+		}
+		return null;
+	}
+
+	private void adjust_tree(final UUID world_id, Node node) {
+		while (true) {
+			final var sibling = node.count > MAX_ENTRIES ? split(node) : null;
+			final var parent = node.parent;
+			if (parent == null) {
+				if (sibling != null) {
+					// Root was split, grow the tree by one level
+					final var root = new Node(false);
+					add_child(root, node);
+					add_child(root, sibling);
+					roots.put(world_id, root);
+				}
+				return;
+			}
+
+			update_child_bounds(parent, node);
+			if (sibling != null) {
+				add_child(parent, sibling);
+			}
+			node = parent;
+		}
+	}
+
+	private void condense_tree(final UUID world_id, Node node) {
+		// Remove underfull nodes on the path to the root and remember their regions for reinsertion
+		final var orphans = new ArrayList<Region>();
+		while (node.parent != null) {
+			final var parent = node.parent;
+			if (node.count < MIN_ENTRIES) {
+				remove_child(parent, index_of(parent, node));
+				node.parent = null;
+				collect_regions(node, orphans);
+			} else {
+				update_child_bounds(parent, node);
+			}
+			node = parent;
+		}
+
+		// Shrink the tree while the root only has a single child node
+		var root = node;
+		while (!root.leaf && root.count == 1) {
+			root = (Node) root.children[0];
+			root.parent = null;
+		}
+
+		if (root.count == 0) {
+			roots.remove(world_id);
+		} else {
+			roots.put(world_id, root);
+		}
+
+		for (final var region : orphans) {
+			add(region);
+		}
+	}
+
+	private static void collect_regions(final Node node, final List<Region> out) {
+		for (int i = 0; i < node.count; ++i) {
+			if (node.leaf) {
+				out.add((Region) node.children[i]);
+			} else {
+				collect_regions((Node) node.children[i], out);
+			}
+		}
+	}
+
+	private static Node split(final Node node) {
+		// Quadratic split. Take all entries out of the node and distribute them between node and sibling.
+		final var n = node.count;
+		final var children = new Object[n];
+		final var bounds = new int[n * B];
+		System.arraycopy(node.children, 0, children, 0, n);
+		System.arraycopy(node.bounds, 0, bounds, 0, n * B);
+		for (int i = 0; i < n; ++i) {
+			node.children[i] = null;
+		}
+		node.count = 0;
+
+		// Pick the two seeds that would waste the most volume when grouped together
+		int seed_a = 0;
+		int seed_b = 1;
+		double worst = -Double.MAX_VALUE;
+		for (int i = 0; i < n; ++i) {
+			for (int j = i + 1; j < n; ++j) {
+				final var waste =
+					union_volume(bounds, i * B, bounds, j * B) - volume(bounds, i * B) - volume(bounds, j * B);
+				if (waste > worst) {
+					worst = waste;
+					seed_a = i;
+					seed_b = j;
+				}
+			}
+		}
+
+		final var sibling = new Node(node.leaf);
+		add_child(node, children[seed_a], bounds, seed_a * B);
+		add_child(sibling, children[seed_b], bounds, seed_b * B);
+
+		final var group_a = new int[B];
+		final var group_b = new int[B];
+		System.arraycopy(bounds, seed_a * B, group_a, 0, B);
+		System.arraycopy(bounds, seed_b * B, group_b, 0, B);
+
+		var remaining = n - 2;
+		for (int i = 0; i < n; ++i) {
+			if (i == seed_a || i == seed_b) {
+				continue;
+			}
+
+			final Node target;
+			if (node.count + remaining <= MIN_ENTRIES) {
+				target = node;
+			} else if (sibling.count + remaining <= MIN_ENTRIES) {
+				target = sibling;
+			} else {
+				final var enl_a = union_volume(group_a, 0, bounds, i * B) - volume(group_a, 0);
+				final var enl_b = union_volume(group_b, 0, bounds, i * B) - volume(group_b, 0);
+				if (enl_a != enl_b) {
+					target = enl_a < enl_b ? node : sibling;
+				} else {
+					target = node.count <= sibling.count ? node : sibling;
+				}
+			}
+
+			add_child(target, children[i], bounds, i * B);
+			include(target == node ? group_a : group_b, 0, bounds, i * B);
+			--remaining;
+		}
+
+		return sibling;
+	}
+}
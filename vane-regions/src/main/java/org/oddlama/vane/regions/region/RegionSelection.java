@@ -5,6 +5,7 @@ import static org.oddlama.vane.util.PlayerUtil.has_items;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.HashMap;
+import java.util.Objects;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
@@ -16,23 +17,22 @@ public class RegionSelection {
 	public Block primary = null;
 	public Block secondary = null;
 
+	// Cached results for the blocks they were computed for. The extent check
+	// is also only valid as long as no region was added or removed.
+	private Block checked_primary = null;
+	private Block checked_secondary = null;
+	private long checked_revision = -1;
+	private boolean checked_extent_valid = false;
+	private SelectionGeometry geometry = null;
+	private Block geometry_primary = null;
+	private Block geometry_secondary = null;
+
 	public RegionSelection(final Regions regions) {
 		this.regions = regions;
 	}
 
 	public boolean intersects_existing() {
-		final var extent = extent();
-		for (final var r : regions.all_regions()) {
-			if (!r.extent().min().getWorld().equals(primary.getWorld())) {
-				continue;
-			}
-
-			if (extent.intersects_extent(r.extent())) {
-				return true;
-			}
-		}
-
-		return false;
+		return regions.intersects_existing_region(extent());
 	}
 
 	public double price() {
@@ -72,17 +72,11 @@ public class RegionSelection {
 		}
 	}
 
-	public boolean is_valid(final Player player) {
-		// Both blocks set
-		if (primary == null || secondary == null) {
-			return false;
-		}
-
-		// Worlds match
-		if (!primary.getWorld().equals(secondary.getWorld())) {
-			return false;
-		}
+	private boolean is_cached_for_selected_blocks(final Block cached_primary, final Block cached_secondary) {
+		return Objects.equals(primary, cached_primary) && Objects.equals(secondary, cached_secondary);
+	}
 
+	private boolean is_extent_valid() {
 		final var dx = 1 + Math.abs(primary.getX() - secondary.getX());
 		final var dy = 1 + Math.abs(primary.getY() - secondary.getY());
 		final var dz = 1 + Math.abs(primary.getZ() - secondary.getZ());
@@ -100,7 +94,30 @@ public class RegionSelection {
 		}
 
 		// Assert that it doesn't intersect an existing region
-		if (intersects_existing()) {
+		return !intersects_existing();
+	}
+
+	public boolean is_valid(final Player player) {
+		// Both blocks set
+		if (primary == null || secondary == null) {
+			return false;
+		}
+
+		// Worlds match
+		if (!primary.getWorld().equals(secondary.getWorld())) {
+			return false;
+		}
+
+		// Check extent only if the selection or the existing regions changed
+		final var revision = regions.region_revision();
+		if (checked_revision != revision || !is_cached_for_selected_blocks(checked_primary, checked_secondary)) {
+			checked_extent_valid = is_extent_valid();
+			checked_primary = primary;
+			checked_secondary = secondary;
+			checked_revision = revision;
+		}
+
+		if (!checked_extent_valid) {
 			return false;
 		}
 
@@ -112,6 +129,31 @@ public class RegionSelection {
 		return true;
 	}
 
+	/**
+	 * Returns the particle geometry of the selected box, or null if the selection is incomplete.
+	 */
+	public SelectionGeometry geometry() {
+		if (primary == null || secondary == null || !primary.getWorld().equals(secondary.getWorld())) {
+			return null;
+		}
+
+		if (geometry == null || !is_cached_for_selected_blocks(geometry_primary, geometry_secondary)) {
+			geometry =
+				new SelectionGeometry(
+					primary.getWorld().getUID(),
+					Math.min(primary.getX(), secondary.getX()),
+					Math.min(primary.getY(), secondary.getY()),
+					Math.min(primary.getZ(), secondary.getZ()),
+					Math.max(primary.getX(), secondary.getX()),
+					Math.max(primary.getY(), secondary.getY()),
+					Math.max(primary.getZ(), secondary.getZ())
+				);
+			geometry_primary = primary;
+			geometry_secondary = secondary;
+		}
+		return geometry;
+	}
+
 	public RegionExtent extent() {
 		return new RegionExtent(primary, secondary);
 	}
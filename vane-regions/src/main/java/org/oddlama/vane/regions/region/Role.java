@@ -89,6 +89,17 @@ public class Role {
 		return settings.getOrDefault(setting, setting.default_value(false));
 	}
 
+	// Returns all settings as a bitmask, where bit i is set iff the setting with ordinal i is granted.
+	public int settings_mask() {
+		int mask = 0;
+		for (final var setting : RoleSetting.values()) {
+			if (get_setting(setting)) {
+				mask |= setting.bit();
+			}
+		}
+		return mask;
+	}
+
 	public String color() {
 		switch (role_type) {
 			case ADMINS:
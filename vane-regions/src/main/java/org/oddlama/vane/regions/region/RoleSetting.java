@@ -15,6 +15,10 @@ public enum RoleSetting {
 		this.def_admin = def_admin;
 	}
 
+	public int bit() {
+		return 1 << ordinal();
+	}
+
 	public boolean default_value(final boolean admin) {
 		if (admin) {
 			return def_admin;
@@ -0,0 +1,124 @@
+package org.oddlama.vane.regions.region;
+
+import java.util.UUID;
+
+/**
+ * Immutable particle geometry of the twelve edges of a selected box.
+ * It is computed once per selected extent, so the visualization can be
+ * prepared off the main thread from this snapshot alone.
+ */
+public class SelectionGeometry {
+
+	public static final int EDGE_COUNT = 12;
+
+	private static final int max_particles = 20000;
+	private static final int min_particles = 16;
+	private static final int particles_per_block = 12;
+	private static final double stddev_compensation = 0.25;
+	// Edges farther away than this are thinned out proportionally to their distance
+	private static final double full_detail_distance = 24.0;
+
+	// Per edge: center, half extent and particle spread on each axis, and particle count
+	private static final int STRIDE = 10;
+
+	private final UUID world_id;
+	private final double[] edges = new double[EDGE_COUNT * STRIDE];
+
+	public SelectionGeometry(final UUID world_id, int lx, int ly, int lz, int hx, int hy, int hz) {
+		this.world_id = world_id;
+
+		// Corners, each as { x, y, z }
+		final int[][] c = {
+			{ lx, ly, lz },
+			{ hx, ly, lz },
+			{ hx, hy, lz },
+			{ lx, hy, lz },
+			{ lx, ly, hz },
+			{ hx, ly, hz },
+			{ hx, hy, hz },
+			{ lx, hy, hz },
+		};
+
+		// Pairs of corners forming the edges of the box
+		final int[][] pairs = {
+			{ 0, 1 },
+			{ 1, 2 },
+			{ 2, 3 },
+			{ 3, 0 },
+			{ 4, 5 },
+			{ 5, 6 },
+			{ 6, 7 },
+			{ 7, 4 },
+			{ 0, 4 },
+			{ 1, 5 },
+			{ 2, 6 },
+			{ 3, 7 },
+		};
+
+		for (int i = 0; i < EDGE_COUNT; ++i) {
+			final var c1 = c[pairs[i][0]];
+			final var c2 = c[pairs[i][1]];
+			final var o = i * STRIDE;
+			double len = 0.0;
+			for (int axis = 0; axis < 3; ++axis) {
+				final double d = Math.abs(c1[axis] - c2[axis]);
+				edges[o + axis] = (c1[axis] + c2[axis]) / 2.0 + 0.5;
+				edges[o + 3 + axis] = d / 2.0;
+				// Unfortunately, particle spawns are normal distributed.
+				// To still have a good visualization, we need to calculate a stddev that looks
+				// good. Empirically we chose a 1/2 of the radius.
+				edges[o + 6 + axis] = d * stddev_compensation;
+				len += d;
+			}
+			edges[o + 9] = Math.min(max_particles, (int) (particles_per_block * len));
+		}
+	}
+
+	public UUID world_id() {
+		return world_id;
+	}
+
+	public double center_x(int edge) {
+		return edges[edge * STRIDE];
+	}
+
+	public double center_y(int edge) {
+		return edges[edge * STRIDE + 1];
+	}
+
+	public double center_z(int edge) {
+		return edges[edge * STRIDE + 2];
+	}
+
+	public double spread_x(int edge) {
+		return edges[edge * STRIDE + 6];
+	}
+
+	public double spread_y(int edge) {
+		return edges[edge * STRIDE + 7];
+	}
+
+	public double spread_z(int edge) {
+		return edges[edge * STRIDE + 8];
+	}
+
+	/**
+	 * Returns the number of particles to spawn for the given edge, when viewed
+	 * from the given position. Distant edges get fewer particles, as their
+	 * particles are too small to be told apart anyway.
+	 */
+	public int particle_count(int edge, double x, double y, double z) {
+		final var o = edge * STRIDE;
+		// Distance to the nearest point of the edge
+		final var dx = Math.max(0.0, Math.abs(x - edges[o]) - edges[o + 3]);
+		final var dy = Math.max(0.0, Math.abs(y - edges[o + 1]) - edges[o + 4]);
+		final var dz = Math.max(0.0, Math.abs(z - edges[o + 2]) - edges[o + 5]);
+		final var distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+		final var count = (int) edges[o + 9];
+		if (distance <= full_detail_distance) {
+			return count;
+		}
+		return Math.min(count, Math.max(min_particles, (int) (count * full_detail_distance / distance)));
+	}
+}
@@ -1,34 +1,55 @@
 package org.oddlama.vane.trifles;
 
-import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
-import org.bukkit.event.player.PlayerMoveEvent;
 import org.oddlama.vane.core.Listener;
+import org.oddlama.vane.core.PlayerMovementDispatcher;
 
 public class FastWalkingListener extends Listener<Trifles> {
 
 	FastWalkingGroup fast_walking;
+	private PlayerMovementDispatcher.Subscription movement_subscription;
 
 	public FastWalkingListener(FastWalkingGroup context) {
 		super(context);
 		this.fast_walking = context;
 	}
 
-	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-	public void on_player_move(final PlayerMoveEvent event) {
+	@Override
+	protected void on_enable() {
+		super.on_enable();
+		movement_subscription =
+			get_module()
+				.core.movement_dispatcher.subscribe(
+					EventPriority.MONITOR,
+					PlayerMovementDispatcher.Change.POSITION,
+					this::on_player_move
+				);
+	}
+
+	@Override
+	protected void on_disable() {
+		get_module().core.movement_dispatcher.unsubscribe(movement_subscription);
+		movement_subscription = null;
+		super.on_disable();
+	}
+
+	private void on_player_move(final PlayerMovementDispatcher.Movement movement) {
 		// Players mustn't be riding any vehicle or be flying
-		final var player = event.getPlayer();
+		final var player = movement.player();
 		if (player.isInsideVehicle() || player.isGliding()) {
 			return;
 		}
 
 		// Inspect block type just a little below the player
-		var block = event.getTo().clone().subtract(0.0, 0.1, 0.0).getBlock();
+		final var to = movement.event().getTo();
+		final var block = to
+			.getWorld()
+			.getBlockAt(to.getBlockX(), (int) Math.floor(to.getY() - 0.1), to.getBlockZ());
 		if (!fast_walking.config_materials.contains(block.getType())) {
 			return;
 		}
 
 		// Apply potion effect
-		event.getPlayer().addPotionEffect(fast_walking.walk_speed_effect);
+		player.addPotionEffect(fast_walking.walk_speed_effect);
 	}
 }
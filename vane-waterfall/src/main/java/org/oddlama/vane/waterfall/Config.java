@@ -19,6 +19,17 @@ public class Config {
 	// port → alias id (starts at 1)
 	public final Map<Integer, Integer> multiplexer_by_port = new HashMap<>();
 
+	// Health checks
+	public long health_check_interval_ms = 2000;
+	public long health_check_timeout_ms = 1000;
+	public long health_check_start_timeout_ms = 120000;
+
+	// Uuid lookups
+	public long uuid_cache_ttl_ms = 24 * 60 * 60 * 1000l;
+	public int uuid_cache_max_size = 10000;
+	public long uuid_connect_timeout_ms = 2000;
+	public long uuid_read_timeout_ms = 3000;
+
 	public Config(final Waterfall plugin) {
 		this.plugin = plugin;
 	}
@@ -41,6 +52,17 @@ public class Config {
 				multiplexer_by_port.put(Integer.parseInt(key), conf_auth_multiplex.getInt(key));
 			}
 
+			final var conf_health_check = conf.getSection("health_check");
+			health_check_interval_ms = conf_health_check.getLong("interval_ms", health_check_interval_ms);
+			health_check_timeout_ms = conf_health_check.getLong("timeout_ms", health_check_timeout_ms);
+			health_check_start_timeout_ms = conf_health_check.getLong("start_timeout_ms", health_check_start_timeout_ms);
+
+			final var conf_uuid_cache = conf.getSection("uuid_cache");
+			uuid_cache_ttl_ms = conf_uuid_cache.getLong("ttl_ms", uuid_cache_ttl_ms);
+			uuid_cache_max_size = conf_uuid_cache.getInt("max_size", uuid_cache_max_size);
+			uuid_connect_timeout_ms = conf_uuid_cache.getLong("connect_timeout_ms", uuid_connect_timeout_ms);
+			uuid_read_timeout_ms = conf_uuid_cache.getLong("read_timeout_ms", uuid_read_timeout_ms);
+
 			final var conf_managed_servers = conf.getSection("managed_servers");
 			for (final var id : conf_managed_servers.getKeys()) {
 				final var section = conf_managed_servers.getSection(id);
@@ -84,6 +106,25 @@ public class Config {
 			"# auth_multiplex: {}\n" +
 			"auth_multiplex: {}\n" +
 			"\n" +
+			"# All servers are periodically probed in the background to determine whether they are online.\n" +
+			"health_check:\n" +
+			"  # The interval in which all servers are probed\n" +
+			"  interval_ms: 2000\n" +
+			"  # The time after which a server that doesn't accept connections is considered offline\n" +
+			"  timeout_ms: 1000\n" +
+			"  # The time a server may take to start before it is considered offline again\n" +
+			"  start_timeout_ms: 120000\n" +
+			"\n" +
+			"# Player uuids are looked up before authentication for permission checks, and cached.\n" +
+			"uuid_cache:\n" +
+			"  # The time after which a cached uuid is looked up again\n" +
+			"  ttl_ms: 86400000\n" +
+			"  # The maximum amount of cached uuids\n" +
+			"  max_size: 10000\n" +
+			"  # Timeouts for requests to the mojang api\n" +
+			"  connect_timeout_ms: 2000\n" +
+			"  read_timeout_ms: 3000\n" +
+			"\n" +
 			"# A dictionary of managed servers, which will be started on demand.\n" +
 			"# Example:\n" +
 			"# # Name of server as defined in proxy's config.yml\n" +
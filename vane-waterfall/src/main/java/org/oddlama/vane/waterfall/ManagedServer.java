@@ -1,8 +1,13 @@
 package org.oddlama.vane.waterfall;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+import net.md_5.bungee.api.Favicon;
 import net.md_5.bungee.api.chat.BaseComponent;
 import net.md_5.bungee.api.chat.TextComponent;
 
@@ -18,6 +23,24 @@ public class ManagedServer {
 	private List<String> start_cmd;
 	private String start_kick_msg;
 
+	// Motds for each quote, parsed on first use. Only copies are handed out, so they are never modified.
+	private volatile List<BaseComponent> motd_online_variants = null;
+	private volatile List<BaseComponent> motd_offline_variants = null;
+
+	// The decoded favicon, reloaded when the file's modification time changes
+	private static class CachedFavicon {
+
+		private final long last_modified;
+		private final Favicon favicon;
+
+		private CachedFavicon(long last_modified, final Favicon favicon) {
+			this.last_modified = last_modified;
+			this.favicon = favicon;
+		}
+	}
+
+	private volatile CachedFavicon cached_favicon = null;
+
 	public ManagedServer(final String id) {
 		this.id = id;
 	}
@@ -28,58 +51,96 @@ public class ManagedServer {
 
 	public void display_name(String display_name) {
 		this.display_name = display_name;
+		invalidate_motds();
 	}
 
 	public String display_name() {
 		return display_name;
 	}
 
-	public String random_quote_online() {
-		if (quotes_online == null || quotes_online.isEmpty()) {
+	private static String random_quote(final List<String> quotes) {
+		if (quotes == null || quotes.isEmpty()) {
 			return "";
 		}
-		return quotes_online.get(new Random().nextInt(quotes_online.size()));
+		return quotes.get(ThreadLocalRandom.current().nextInt(quotes.size()));
+	}
+
+	public String random_quote_online() {
+		return random_quote(quotes_online);
 	}
 
 	public void quotes_online(List<String> quotes_online) {
 		this.quotes_online = quotes_online;
+		invalidate_motds();
 	}
 
 	public String random_quote_offline() {
-		if (quotes_offline == null || quotes_offline.isEmpty()) {
-			return "";
-		}
-		return quotes_offline.get(new Random().nextInt(quotes_offline.size()));
+		return random_quote(quotes_offline);
 	}
 
 	public void quotes_offline(List<String> quotes_offline) {
 		this.quotes_offline = quotes_offline;
+		invalidate_motds();
+	}
+
+	private void invalidate_motds() {
+		motd_online_variants = null;
+		motd_offline_variants = null;
 	}
 
-	public BaseComponent[] motd_online() {
-		if (motd_online == null) {
-			return new BaseComponent[0];
+	private List<BaseComponent> parse_motd_variants(final String motd, final List<String> quotes) {
+		final var variants = new ArrayList<BaseComponent>();
+		if (motd == null) {
+			variants.add(new TextComponent());
+			return variants;
 		}
-		return TextComponent.fromLegacyText(
-			motd_online.replace("%SERVER_DISPLAY_NAME%", display_name()).replace("%QUOTE%", random_quote_online())
-		);
+
+		final var with_name = motd.replace("%SERVER_DISPLAY_NAME%", String.valueOf(display_name()));
+		if (quotes == null || quotes.isEmpty() || !with_name.contains("%QUOTE%")) {
+			variants.add(new TextComponent(TextComponent.fromLegacyText(with_name.replace("%QUOTE%", ""))));
+			return variants;
+		}
+
+		for (final var quote : quotes) {
+			variants.add(new TextComponent(TextComponent.fromLegacyText(with_name.replace("%QUOTE%", quote))));
+		}
+		return variants;
+	}
+
+	private static BaseComponent random_variant(final List<BaseComponent> variants) {
+		return variants.get(ThreadLocalRandom.current().nextInt(variants.size())).duplicate();
+	}
+
+	/**
+	 * Returns a copy of the online motd with a random quote.
+	 */
+	public BaseComponent motd_online() {
+		var variants = motd_online_variants;
+		if (variants == null) {
+			motd_online_variants = variants = parse_motd_variants(motd_online, quotes_online);
+		}
+		return random_variant(variants);
 	}
 
 	public void motd_online(String motd_online) {
 		this.motd_online = motd_online;
+		invalidate_motds();
 	}
 
-	public BaseComponent[] motd_offline() {
-		if (motd_offline == null) {
-			return new BaseComponent[0];
+	/**
+	 * Returns a copy of the offline motd with a random quote.
+	 */
+	public BaseComponent motd_offline() {
+		var variants = motd_offline_variants;
+		if (variants == null) {
+			motd_offline_variants = variants = parse_motd_variants(motd_offline, quotes_offline);
 		}
-		return TextComponent.fromLegacyText(
-			motd_offline.replace("%SERVER_DISPLAY_NAME%", display_name()).replace("%QUOTE%", random_quote_offline())
-		);
+		return random_variant(variants);
 	}
 
 	public void motd_offline(String motd_offline) {
 		this.motd_offline = motd_offline;
+		invalidate_motds();
 	}
 
 	public File favicon_file() {
@@ -88,6 +149,37 @@ public class ManagedServer {
 
 	public void favicon(String favicon) {
 		this.favicon = favicon;
+		cached_favicon = null;
+	}
+
+	/**
+	 * Returns the decoded favicon, or null if there is none. The file is only
+	 * decoded again when its modification time has changed.
+	 */
+	public Favicon favicon(final Logger log) {
+		if (favicon == null) {
+			return null;
+		}
+
+		final var file = favicon_file();
+		// Zero if the file doesn't exist
+		final var last_modified = file.lastModified();
+		final var cached = cached_favicon;
+		if (cached != null && cached.last_modified == last_modified) {
+			return cached.favicon;
+		}
+
+		Favicon result = null;
+		if (last_modified != 0) {
+			try {
+				result = Favicon.create(ImageIO.read(file));
+			} catch (Exception e) {
+				log.log(Level.WARNING, "Could not load favicon '" + file + "' of server '" + id() + "'", e);
+			}
+		}
+
+		cached_favicon = new CachedFavicon(last_modified, result);
+		return result;
 	}
 
 	public String[] start_cmd() {
@@ -0,0 +1,53 @@
+package org.oddlama.vane.waterfall;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Resolves uuids using the mojang api.
+ */
+public class MojangUuidResolver implements UuidResolver {
+
+	private static final String URL = "https://api.mojang.com/users/profiles/minecraft/";
+
+	private final Waterfall plugin;
+
+	public MojangUuidResolver(final Waterfall plugin) {
+		this.plugin = plugin;
+	}
+
+	@Override
+	public UUID resolve(String name) throws IOException {
+		final var connection = (HttpURLConnection) new URL(URL + name).openConnection();
+		connection.setConnectTimeout((int) plugin.config.uuid_connect_timeout_ms);
+		connection.setReadTimeout((int) plugin.config.uuid_read_timeout_ms);
+		try {
+			final var status = connection.getResponseCode();
+			if (status == HttpURLConnection.HTTP_NO_CONTENT || status == HttpURLConnection.HTTP_NOT_FOUND) {
+				// No player with this name
+				return null;
+			} else if (status != HttpURLConnection.HTTP_OK) {
+				throw new IOException("Unexpected response " + status + " from mojang api");
+			}
+
+			try (final var in = connection.getInputStream()) {
+				final var json = new JSONObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+				final var id_str = json.getString("id");
+				final var uuid_str = id_str.replaceFirst(
+					"(\\p{XDigit}{8})(\\p{XDigit}{4})(\\p{XDigit}{4})(\\p{XDigit}{4})(\\p{XDigit}+)",
+					"$1-$2-$3-$4-$5"
+				);
+				return UUID.fromString(uuid_str);
+			} catch (JSONException | IllegalArgumentException e) {
+				throw new IOException("Invalid response from mojang api", e);
+			}
+		} finally {
+			connection.disconnect();
+		}
+	}
+}
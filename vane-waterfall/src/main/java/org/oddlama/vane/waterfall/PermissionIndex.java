@@ -0,0 +1,74 @@
+package org.oddlama.vane.waterfall;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Effective permissions of players, as defined by the groups and permissions in the
+ * proxy's configuration. The configuration can't be enumerated by player, so the set of
+ * each player is built on first use. Players in the same groups share the same set.
+ * The index must be cleared when the proxy configuration is reloaded.
+ */
+public class PermissionIndex {
+
+	// Bounds the memory used by players that have left long ago
+	private static final int MAX_PLAYERS = 10000;
+
+	private final Waterfall plugin;
+
+	// sorted group names → effective permissions
+	private final Map<List<String>, Set<String>> permissions_by_groups = new ConcurrentHashMap<>();
+	// player → effective permissions
+	private final Map<UUID, Set<String>> permissions_by_player = new ConcurrentHashMap<>();
+
+	public PermissionIndex(final Waterfall plugin) {
+		this.plugin = plugin;
+	}
+
+	public void clear() {
+		permissions_by_groups.clear();
+		permissions_by_player.clear();
+	}
+
+	private Set<String> collect_permissions(final List<String> groups) {
+		final var conf_adapter = plugin.getProxy().getConfigurationAdapter();
+		final var permissions = new HashSet<String>();
+		for (final var group : groups) {
+			final var perms = conf_adapter.getList("permissions." + group, null);
+			if (perms != null) {
+				for (final var perm : perms) {
+					permissions.add(String.valueOf(perm));
+				}
+			}
+		}
+		return Collections.unmodifiableSet(permissions);
+	}
+
+	private Set<String> permissions_of(final UUID uuid) {
+		final var groups = new ArrayList<>(plugin.getProxy().getConfigurationAdapter().getGroups(uuid.toString()));
+		Collections.sort(groups);
+		return permissions_by_groups.computeIfAbsent(groups, this::collect_permissions);
+	}
+
+	public boolean has_permission(final UUID uuid, final String permission) {
+		if (uuid == null) {
+			return false;
+		}
+
+		var permissions = permissions_by_player.get(uuid);
+		if (permissions == null) {
+			if (permissions_by_player.size() >= MAX_PLAYERS) {
+				permissions_by_player.clear();
+			}
+			permissions = permissions_of(uuid);
+			permissions_by_player.put(uuid, permissions);
+		}
+		return permissions.contains(permission);
+	}
+}
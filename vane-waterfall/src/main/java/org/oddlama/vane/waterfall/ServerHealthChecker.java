@@ -0,0 +1,244 @@
+package org.oddlama.vane.waterfall;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+
+/**
+ * Probes all backend servers in a fixed interval from a single background thread.
+ * All servers of a round are connected to concurrently using non-blocking channels,
+ * and a server is considered down if its connection isn't established within the timeout.
+ * The resulting state is cached, so it can be queried in constant time from any thread.
+ */
+public class ServerHealthChecker implements Runnable {
+
+	public static enum State {
+		// Not probed yet
+		UNKNOWN,
+		DOWN,
+		// Started by us, but not reachable yet
+		STARTING,
+		UP,
+	}
+
+	private final Waterfall plugin;
+
+	// server name → state
+	private final Map<String, State> states = new ConcurrentHashMap<>();
+	// server name → time the server was started at
+	private final Map<String, Long> starting_since = new ConcurrentHashMap<>();
+
+	private volatile boolean running = false;
+	private Selector selector = null;
+	private ScheduledTask task = null;
+
+	public ServerHealthChecker(final Waterfall plugin) {
+		this.plugin = plugin;
+	}
+
+	public void start() {
+		try {
+			selector = Selector.open();
+		} catch (IOException e) {
+			plugin.getLogger().log(Level.SEVERE, "Could not open selector, servers will not be probed", e);
+			return;
+		}
+
+		running = true;
+		task = plugin.getProxy().getScheduler().runAsync(plugin, this);
+	}
+
+	public void stop() {
+		running = false;
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+		if (selector != null) {
+			selector.wakeup();
+		}
+	}
+
+	public State state(final ServerInfo server) {
+		return states.getOrDefault(server.getName(), State.UNKNOWN);
+	}
+
+	public boolean is_online(final ServerInfo server) {
+		return state(server) == State.UP;
+	}
+
+	/**
+	 * Marks the given server as starting, if it is currently down. It will then stay
+	 * in this state until it becomes reachable, or the configured start timeout has passed.
+	 * Returns true if the server was marked, so exactly one caller gets to start it.
+	 */
+	public boolean mark_starting(final ServerInfo server) {
+		// The start time is recorded within the same atomic update as the state,
+		// so a concurrent probe result cannot reset a freshly started server to DOWN.
+		final var marked = new boolean[] { false };
+		states.computeIfPresent(
+			server.getName(),
+			(name, state) -> {
+				if (state != State.DOWN) {
+					return state;
+				}
+
+				starting_since.put(name, System.currentTimeMillis());
+				marked[0] = true;
+				return State.STARTING;
+			}
+		);
+
+		if (!marked[0]) {
+			return false;
+		}
+
+		call_event(server, State.DOWN, State.STARTING);
+		return true;
+	}
+
+	private void call_event(final ServerInfo server, final State previous, final State state) {
+		plugin.getProxy().getPluginManager().callEvent(new ServerStateChangeEvent(server, previous, state));
+	}
+
+	private void update(final ServerInfo server, boolean reachable) {
+		final var previous = new State[] { State.UNKNOWN };
+		final var state = states.compute(
+			server.getName(),
+			(name, current) -> {
+				if (current != null) {
+					previous[0] = current;
+				}
+
+				if (reachable) {
+					starting_since.remove(name);
+					return State.UP;
+				}
+
+				final var since = starting_since.get(name);
+				if (since != null && System.currentTimeMillis() - since < plugin.config.health_check_start_timeout_ms) {
+					return State.STARTING;
+				}
+
+				starting_since.remove(name);
+				return State.DOWN;
+			}
+		);
+
+		if (previous[0] != state) {
+			call_event(server, previous[0], state);
+		}
+	}
+
+	private static void close(final SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// Nothing we can do
+		}
+	}
+
+	private void probe_all(final Selector selector) throws IOException {
+		var pending = 0;
+		for (final var server : plugin.getProxy().getServers().values()) {
+			final var addr = server.getSocketAddress();
+			if (!(addr instanceof InetSocketAddress) || ((InetSocketAddress) addr).isUnresolved()) {
+				update(server, false);
+				continue;
+			}
+
+			SocketChannel channel = null;
+			try {
+				channel = SocketChannel.open();
+				channel.configureBlocking(false);
+				if (channel.connect(addr)) {
+					close(channel);
+					update(server, true);
+				} else {
+					channel.register(selector, SelectionKey.OP_CONNECT, server);
+					++pending;
+				}
+			} catch (IOException e) {
+				if (channel != null) {
+					close(channel);
+				}
+				update(server, false);
+			}
+		}
+
+		final var deadline = System.currentTimeMillis() + plugin.config.health_check_timeout_ms;
+		while (pending > 0 && running) {
+			final var remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				break;
+			}
+
+			selector.select(remaining);
+			final var it = selector.selectedKeys().iterator();
+			while (it.hasNext()) {
+				final var key = it.next();
+				it.remove();
+
+				final var channel = (SocketChannel) key.channel();
+				var reachable = false;
+				try {
+					reachable = channel.finishConnect();
+				} catch (IOException e) {
+					// Server not up or not reachable
+				}
+
+				key.cancel();
+				close(channel);
+				update((ServerInfo) key.attachment(), reachable);
+				--pending;
+			}
+		}
+
+		// All remaining connections have timed out
+		for (final var key : selector.keys()) {
+			if (key.isValid()) {
+				key.cancel();
+				close((SocketChannel) key.channel());
+				update((ServerInfo) key.attachment(), false);
+			}
+		}
+
+		// Deregister cancelled keys
+		selector.selectNow();
+	}
+
+	@Override
+	public void run() {
+		final var selector = this.selector;
+		try {
+			while (running) {
+				final var round_start = System.currentTimeMillis();
+				try {
+					probe_all(selector);
+				} catch (IOException e) {
+					plugin.getLogger().log(Level.WARNING, "Error while probing servers", e);
+				}
+
+				final var wait = round_start + plugin.config.health_check_interval_ms - System.currentTimeMillis();
+				if (wait > 0) {
+					Thread.sleep(wait);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			try {
+				selector.close();
+			} catch (IOException e) {
+				// Nothing we can do
+			}
+		}
+	}
+}
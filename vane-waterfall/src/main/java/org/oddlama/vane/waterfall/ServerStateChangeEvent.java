@@ -0,0 +1,37 @@
+package org.oddlama.vane.waterfall;
+
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.plugin.Event;
+
+/**
+ * Called by the {@link ServerHealthChecker} whenever the state of a backend server changes.
+ * This event is called asynchronously from the health checker's thread.
+ */
+public class ServerStateChangeEvent extends Event {
+
+	private final ServerInfo server;
+	private final ServerHealthChecker.State previous_state;
+	private final ServerHealthChecker.State state;
+
+	public ServerStateChangeEvent(
+		final ServerInfo server,
+		final ServerHealthChecker.State previous_state,
+		final ServerHealthChecker.State state
+	) {
+		this.server = server;
+		this.previous_state = previous_state;
+		this.state = state;
+	}
+
+	public ServerInfo server() {
+		return server;
+	}
+
+	public ServerHealthChecker.State previous_state() {
+		return previous_state;
+	}
+
+	public ServerHealthChecker.State state() {
+		return state;
+	}
+}
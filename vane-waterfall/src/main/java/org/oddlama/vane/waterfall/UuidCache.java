@@ -0,0 +1,202 @@
+package org.oddlama.vane.waterfall;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * A bounded cache of player name → uuid mappings, which expire after a configurable time.
+ * Concurrent lookups of the same name share a single request to the resolver.
+ * The cache is persisted across restarts in a compact binary file.
+ */
+public class UuidCache {
+
+	private static final int FILE_VERSION = 1;
+
+	private static class Entry {
+
+		private final UUID uuid;
+		private final long resolved_at;
+
+		private Entry(final UUID uuid, long resolved_at) {
+			this.uuid = uuid;
+			this.resolved_at = resolved_at;
+		}
+	}
+
+	private final Waterfall plugin;
+	private UuidResolver resolver;
+
+	// lowercase name → entry, least recently used first
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > plugin.config.uuid_cache_max_size;
+		}
+	};
+
+	// lowercase name → pending lookup
+	private final Map<String, CompletableFuture<UUID>> in_flight = new ConcurrentHashMap<>();
+
+	public UuidCache(final Waterfall plugin) {
+		this.plugin = plugin;
+		this.resolver = new MojangUuidResolver(plugin);
+	}
+
+	/**
+	 * Replaces the resolver used for names that are not cached.
+	 */
+	public void resolver(final UuidResolver resolver) {
+		this.resolver = resolver;
+	}
+
+	private File file() {
+		return new File(plugin.getDataFolder(), "uuid-cache.bin");
+	}
+
+	private static String key(final String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+	private boolean expired(final Entry entry, long now) {
+		return now - entry.resolved_at >= plugin.config.uuid_cache_ttl_ms;
+	}
+
+	/**
+	 * Returns the cached uuid for the given name, or null if it isn't cached or has expired.
+	 */
+	public synchronized UUID cached(final String name) {
+		final var key = key(name);
+		final var entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+
+		if (expired(entry, System.currentTimeMillis())) {
+			entries.remove(key);
+			return null;
+		}
+
+		return entry.uuid;
+	}
+
+	private synchronized void put(final String key, final UUID uuid, long resolved_at) {
+		entries.put(key, new Entry(uuid, resolved_at));
+	}
+
+	/**
+	 * Resolves the uuid for the given name asynchronously. The future completes
+	 * with null if there is no such player or the lookup failed.
+	 */
+	public CompletableFuture<UUID> resolve_async(final String name) {
+		final var cached = cached(name);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+
+		final var key = key(name);
+		final var future = new CompletableFuture<UUID>();
+		final var existing = in_flight.putIfAbsent(key, future);
+		if (existing != null) {
+			// Someone else is already looking up this name
+			return existing;
+		}
+
+		plugin
+			.getProxy()
+			.getScheduler()
+			.runAsync(
+				plugin,
+				() -> {
+					UUID uuid = null;
+					try {
+						uuid = resolver.resolve(name);
+						if (uuid != null) {
+							put(key, uuid, System.currentTimeMillis());
+						}
+					} catch (IOException e) {
+						plugin.getLogger().log(Level.WARNING, "Failed to resolve UUID for player '" + name + "'", e);
+					} finally {
+						in_flight.remove(key, future);
+						future.complete(uuid);
+					}
+				}
+			);
+		return future;
+	}
+
+	public void load() {
+		final var file = file();
+		if (!file.exists()) {
+			return;
+		}
+
+		final var now = System.currentTimeMillis();
+		try (final var in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != FILE_VERSION) {
+				return;
+			}
+
+			final var count = in.readInt();
+			synchronized (this) {
+				for (int i = 0; i < count; ++i) {
+					final var key = in.readUTF();
+					final var uuid = new UUID(in.readLong(), in.readLong());
+					final var entry = new Entry(uuid, in.readLong());
+					if (!expired(entry, now)) {
+						entries.put(key, entry);
+					}
+				}
+			}
+		} catch (IOException e) {
+			plugin.getLogger().log(Level.WARNING, "Could not load uuid cache from '" + file + "'", e);
+		}
+	}
+
+	public void save() {
+		final ArrayList<Map.Entry<String, Entry>> snapshot;
+		synchronized (this) {
+			snapshot = new ArrayList<>(entries.entrySet());
+		}
+
+		// Entries are stored least recently used first, so loading restores the order
+		final var file = file();
+		final var tmp_file = new File(file.getPath() + ".tmp");
+		try {
+			try (final var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp_file)))) {
+				out.writeInt(FILE_VERSION);
+				out.writeInt(snapshot.size());
+				for (final var e : snapshot) {
+					out.writeUTF(e.getKey());
+					out.writeLong(e.getValue().uuid.getMostSignificantBits());
+					out.writeLong(e.getValue().uuid.getLeastSignificantBits());
+					out.writeLong(e.getValue().resolved_at);
+				}
+			}
+
+			Files.move(
+				tmp_file.toPath(),
+				file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE
+			);
+		} catch (IOException e) {
+			plugin.getLogger().log(Level.WARNING, "Could not save uuid cache to '" + file + "'", e);
+		}
+	}
+}
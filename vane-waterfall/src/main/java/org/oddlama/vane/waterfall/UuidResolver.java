@@ -0,0 +1,16 @@
+package org.oddlama.vane.waterfall;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Resolves the uuid of a player by name, before the player is authenticated.
+ * Implementations are called from background threads and may block.
+ */
+@FunctionalInterface
+public interface UuidResolver {
+	/**
+	 * Returns the uuid of the player with the given name, or null if there is no such player.
+	 */
+	public UUID resolve(String name) throws IOException;
+}
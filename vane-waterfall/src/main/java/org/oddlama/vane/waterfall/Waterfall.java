@@ -2,19 +2,11 @@ package org.oddlama.vane.waterfall;
 
 import static org.oddlama.vane.waterfall.Util.add_uuid;
 
-import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 import java.util.logging.Level;
-import javax.imageio.ImageIO;
 import net.md_5.bungee.api.AbstractReconnectHandler;
 import net.md_5.bungee.api.Favicon;
 import net.md_5.bungee.api.ServerPing;
@@ -24,23 +16,26 @@ import net.md_5.bungee.api.config.ServerInfo;
 import net.md_5.bungee.api.connection.PendingConnection;
 import net.md_5.bungee.api.event.PreLoginEvent;
 import net.md_5.bungee.api.event.ProxyPingEvent;
+import net.md_5.bungee.api.event.ProxyReloadEvent;
 import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.api.plugin.Plugin;
 import net.md_5.bungee.event.EventHandler;
 import net.md_5.bungee.event.EventPriority;
 import net.md_5.bungee.protocol.packet.LoginRequest;
 import org.bstats.bungeecord.Metrics;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 public class Waterfall extends Plugin implements Listener {
 
 	public static final String CHANNEL_AUTH_MULTIPLEX = "vane_waterfall:auth_multiplex";
 	public static String MESSAGE_MULTIPLEX_MOJANG_AUTH_NO_PERMISSION_KICK =
 		"§cYou have no permission to use this auth multiplexer!";
+	public static String MESSAGE_LOGIN_FAILED_KICK = "§cYour login could not be processed, please try again later.";
 
 	public Config config = new Config(this);
 	public Maintenance maintenance = new Maintenance(this);
+	public UuidCache uuid_cache = new UuidCache(this);
+	public PermissionIndex permission_index = new PermissionIndex(this);
+	public ServerHealthChecker health_checker = new ServerHealthChecker(this);
 
 	// bStats
 	private Metrics metrics;
@@ -51,6 +46,8 @@ public class Waterfall extends Plugin implements Listener {
 
 		config.load();
 		maintenance.load();
+		uuid_cache.load();
+		health_checker.start();
 
 		final var plugin_manager = getProxy().getPluginManager();
 		plugin_manager.registerListener(this, this);
@@ -65,6 +62,8 @@ public class Waterfall extends Plugin implements Listener {
 		final var plugin_manager = getProxy().getPluginManager();
 		plugin_manager.unregisterCommands(this);
 		plugin_manager.unregisterListeners(this);
+		health_checker.stop();
+		uuid_cache.save();
 
 		getProxy().unregisterChannel(CHANNEL_AUTH_MULTIPLEX);
 
@@ -88,39 +87,6 @@ public class Waterfall extends Plugin implements Listener {
 		event.setResponse(server_ping);
 	}
 
-	private static String read_all(Reader rd) throws IOException {
-		final var sb = new StringBuilder();
-		int cp;
-		while ((cp = rd.read()) != -1) {
-			sb.append((char) cp);
-		}
-		return sb.toString();
-	}
-
-	public static JSONObject read_json_from_url(String url) throws IOException, JSONException {
-		try (
-			final var rd = new BufferedReader(new InputStreamReader(new URL(url).openStream(), StandardCharsets.UTF_8))
-		) {
-			return new JSONObject(read_all(rd));
-		}
-	}
-
-	public UUID resolve_uuid(String name) {
-		final var url = "https://api.mojang.com/users/profiles/minecraft/" + name;
-		try {
-			final var json = read_json_from_url(url);
-			final var id_str = json.getString("id");
-			final var uuid_str = id_str.replaceFirst(
-				"(\\p{XDigit}{8})(\\p{XDigit}{4})(\\p{XDigit}{4})(\\p{XDigit}{4})(\\p{XDigit}+)",
-				"$1-$2-$3-$4-$5"
-			);
-			return UUID.fromString(uuid_str);
-		} catch (IOException e) {
-			getLogger().log(Level.WARNING, "Failed to resolve UUID for player '" + name + "'", e);
-			return null;
-		}
-	}
-
 	@EventHandler(priority = EventPriority.LOWEST)
 	public void on_pre_login(PreLoginEvent event) {
 		if (event.isCancelled()) {
@@ -128,14 +94,48 @@ public class Waterfall extends Plugin implements Listener {
 		}
 
 		final var connection = event.getConnection();
-		// This is pre-authentication, so we need to resolve the uuid ourselves.
-		final var uuid = resolve_uuid(connection.getName());
-
 		var server = AbstractReconnectHandler.getForcedHost(connection);
 		if (server == null) {
 			server = getProxy().getServerInfo(connection.getListener().getServerPriority().get(0));
 		}
 
+		final var port = connection.getVirtualHost().getPort();
+		final var multiplexer_id = config.multiplexer_by_port.getOrDefault(port, 0);
+		if (!maintenance.enabled() && multiplexer_id <= 0) {
+			// The uuid is only needed for permission checks, so we don't need to resolve it
+			start_server_if_necessary(event, server);
+			return;
+		}
+
+		// This is pre-authentication, so we need to resolve the uuid ourselves.
+		// The login is paused until the lookup has finished.
+		final var sinfo = server;
+		event.registerIntent(this);
+		uuid_cache
+			.resolve_async(connection.getName())
+			.whenComplete((uuid, e) -> {
+				try {
+					if (e != null) {
+						deny_login(event, e);
+					} else {
+						handle_pre_login(event, sinfo, uuid, multiplexer_id);
+					}
+				} catch (RuntimeException ex) {
+					deny_login(event, ex);
+				} finally {
+					event.completeIntent(this);
+				}
+			});
+	}
+
+	private void deny_login(PreLoginEvent event, Throwable e) {
+		// Never let a player through whose login could not be checked
+		getLogger().log(Level.SEVERE, "Error while handling login of '" + event.getConnection().getName() + "'", e);
+		event.setCancelReason(TextComponent.fromLegacyText(MESSAGE_LOGIN_FAILED_KICK));
+		event.setCancelled(true);
+	}
+
+	private void handle_pre_login(PreLoginEvent event, ServerInfo server, UUID uuid, int multiplexer_id) {
 		if (maintenance.enabled()) {
 			// Client is connecting while maintenance is on
 			if (has_permission(uuid, "vane_waterfall.bypass_maintenance")) {
@@ -148,45 +148,11 @@ public class Waterfall extends Plugin implements Listener {
 			return;
 		}
 
-		// Start server if necessary
-		if (!is_online(server)) {
-			// For use inside callback
-			final var sinfo = server;
-			final var cms = config.managed_servers.get(sinfo.getName());
-
-			if (cms == null || cms.start_cmd() == null) {
-				getLogger().severe("Could not start server '" + sinfo.getName() + "', no start command was set!");
-				event.setCancelReason(TextComponent.fromLegacyText("Could not start server"));
-			} else {
-				// Client is connecting while startup
-				getProxy()
-					.getScheduler()
-					.runAsync(
-						this,
-						() -> {
-							try {
-								final var p = Runtime.getRuntime().exec(cms.start_cmd());
-								p.waitFor();
-							} catch (Exception e) {
-								e.printStackTrace();
-							}
-						}
-					);
-
-				if (cms.start_kick_msg() == null) {
-					event.setCancelReason(TextComponent.fromLegacyText("Server started"));
-				} else {
-					event.setCancelReason(cms.start_kick_msg());
-				}
-			}
-
-			event.setCancelled(true);
+		if (!start_server_if_necessary(event, server)) {
 			return;
 		}
 
 		// Multiplex authentication if the connection is to an multiplexing port
-		final var port = connection.getVirtualHost().getPort();
-		final var multiplexer_id = config.multiplexer_by_port.getOrDefault(port, 0);
 		if (multiplexer_id > 0) {
 			if (!has_permission(uuid, "vane_waterfall.auth_multiplexer." + multiplexer_id)) {
 				event.setCancelReason(TextComponent.fromLegacyText(MESSAGE_MULTIPLEX_MOJANG_AUTH_NO_PERMISSION_KICK));
@@ -194,6 +160,7 @@ public class Waterfall extends Plugin implements Listener {
 				return;
 			}
 
+			final var connection = event.getConnection();
 			final var name = connection.getName();
 			final var new_uuid = add_uuid(uuid, multiplexer_id);
 			final var new_uuid_str = new_uuid.toString();
@@ -245,6 +212,55 @@ public class Waterfall extends Plugin implements Listener {
 		}
 	}
 
+	/**
+	 * Starts the given server if it is offline, in which case the connection is
+	 * cancelled. Returns true if the server is (assumed to be) online.
+	 */
+	private boolean start_server_if_necessary(PreLoginEvent event, ServerInfo server) {
+		// Servers that haven't been probed yet are assumed to be online,
+		// the connection will fail if they aren't.
+		final var state = health_checker.state(server);
+		if (state == ServerHealthChecker.State.DOWN || state == ServerHealthChecker.State.STARTING) {
+			// For use inside callback
+			final var sinfo = server;
+			final var cms = config.managed_servers.get(sinfo.getName());
+
+			if (cms == null || cms.start_cmd() == null) {
+				getLogger().severe("Could not start server '" + sinfo.getName() + "', no start command was set!");
+				event.setCancelReason(TextComponent.fromLegacyText("Could not start server"));
+			} else {
+				// Only run the start command once, until the server is up or the start has timed out
+				if (health_checker.mark_starting(sinfo)) {
+					getProxy()
+						.getScheduler()
+						.runAsync(
+							this,
+							() -> {
+								try {
+									final var p = Runtime.getRuntime().exec(cms.start_cmd());
+									p.waitFor();
+								} catch (Exception e) {
+									e.printStackTrace();
+								}
+							}
+						);
+				}
+
+				// Client is connecting while startup
+				if (cms.start_kick_msg() == null) {
+					event.setCancelReason(TextComponent.fromLegacyText("Server started"));
+				} else {
+					event.setCancelReason(cms.start_kick_msg());
+				}
+			}
+
+			event.setCancelled(true);
+			return false;
+		}
+
+		return true;
+	}
+
 	private void register_auth_multiplex_player(
 		ServerInfo server,
 		int multiplexer_id,
@@ -270,20 +286,17 @@ public class Waterfall extends Plugin implements Listener {
 	}
 
 	public boolean is_online(final ServerInfo server) {
-		final var addr = server.getSocketAddress();
-		if (!(addr instanceof InetSocketAddress)) {
-			return false;
-		}
+		return health_checker.is_online(server);
+	}
 
-		final var inet_addr = (InetSocketAddress) addr;
-		var connected = false;
-		try (final var test = new Socket(inet_addr.getHostName(), inet_addr.getPort())) {
-			connected = test.isConnected();
-		} catch (IOException e) {
-			// Server not up or not reachable
+	@EventHandler
+	public void on_server_state_change(ServerStateChangeEvent event) {
+		// The initial state of each server is not worth logging
+		if (event.previous_state() == ServerHealthChecker.State.UNKNOWN) {
+			return;
 		}
 
-		return connected;
+		getLogger().info("Server '" + event.server().getName() + "' is now " + event.state().name().toLowerCase());
 	}
 
 	public BaseComponent get_motd(final ServerInfo server) {
@@ -297,14 +310,7 @@ public class Waterfall extends Plugin implements Listener {
 			return new TextComponent();
 		}
 
-		BaseComponent motd = null;
-		if (is_online(server)) {
-			motd = new TextComponent(cms.motd_online());
-		} else {
-			motd = new TextComponent(cms.motd_offline());
-		}
-
-		return motd == null ? new TextComponent() : motd;
+		return is_online(server) ? cms.motd_online() : cms.motd_offline();
 	}
 
 	public Favicon get_favicon(final ServerInfo server) {
@@ -313,31 +319,16 @@ public class Waterfall extends Plugin implements Listener {
 			return null;
 		}
 
-		final var file = cms.favicon_file();
-		if (file.exists()) {
-			try {
-				return Favicon.create(ImageIO.read(file));
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-		}
-
-		return null;
+		return cms.favicon(getLogger());
 	}
 
 	public boolean has_permission(UUID uuid, String permission) {
-		if (uuid == null) {
-			return false;
-		}
-
-		final var conf_adapter = getProxy().getConfigurationAdapter();
-		for (final var group : conf_adapter.getGroups(uuid.toString())) {
-			final var perms = conf_adapter.getList("permissions." + group, null);
-			if (perms != null && perms.contains(permission)) {
-				return true;
-			}
-		}
+		return permission_index.has_permission(uuid, permission);
+	}
 
-		return false;
+	@EventHandler
+	public void on_proxy_reload(ProxyReloadEvent event) {
+		// Groups and permissions may have changed
+		permission_index.clear();
 	}
 }